@@ -0,0 +1,198 @@
+package com.luis.learnplatform.benchmarks;
+
+import com.luis.learnplatform.config.AuthorizationServerConfig;
+import com.luis.learnplatform.config.ResourceServerConfig;
+import com.luis.learnplatform.config.authorization.BoundedInMemoryOAuth2AuthorizationService;
+import com.luis.learnplatform.config.customgrant.CustomPasswordAuthenticationConverter;
+import com.luis.learnplatform.config.customgrant.CustomPasswordAuthenticationProvider;
+import com.luis.learnplatform.config.customgrant.CustomPasswordAuthenticationToken;
+import com.luis.learnplatform.config.customgrant.CustomUserAuthorities;
+import com.luis.learnplatform.config.customgrant.PasswordVerifier;
+import com.luis.learnplatform.config.jwk.Jwks;
+import com.luis.learnplatform.config.jwt.RoleAuthorityRegistry;
+import com.luis.learnplatform.entities.Role;
+import com.luis.learnplatform.entities.User;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContext;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContextHolder;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat;
+import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
+import org.springframework.security.oauth2.server.authorization.token.DefaultOAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.DelegatingOAuth2TokenGenerator;
+import org.springframework.security.oauth2.server.authorization.token.JwtGenerator;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2AccessTokenGenerator;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenContext;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each stage of the password grant and of a protected request, measured on its own. Password
+ * checks use a no-op encoder so that the cost of the surrounding pipeline is visible; see
+ * {@link TokenEndpointBenchmark} for the cost including BCrypt.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthenticationPipelineBenchmark {
+
+    private static final String USERNAME = "alex@gmail.com";
+    private static final String PASSWORD = "12345678";
+
+    private CustomPasswordAuthenticationConverter converter;
+    private MockHttpServletRequest tokenRequest;
+    private CustomPasswordAuthenticationProvider provider;
+    private OAuth2ClientAuthenticationToken clientPrincipal;
+    private PasswordVerifier passwordVerifier;
+    private JwtGenerator jwtGenerator;
+    private OAuth2TokenContext tokenContext;
+    private JwtDecoder jwtDecoder;
+    private JwtAuthenticationConverter jwtAuthenticationConverter;
+    private String token;
+    private Jwt jwt;
+    private AuthorizationServerContext authorizationServerContext;
+
+    @Setup
+    public void setUp() {
+        RegisteredClient registeredClient = RegisteredClient.withId("myclientid")
+                .clientId("myclientid")
+                .clientSecret("myclientsecret")
+                .scope("read")
+                .scope("write")
+                .authorizationGrantType(new AuthorizationGrantType("password"))
+                .tokenSettings(TokenSettings.builder()
+                        .accessTokenFormat(OAuth2TokenFormat.SELF_CONTAINED)
+                        .accessTokenTimeToLive(Duration.ofHours(1))
+                        .build())
+                .build();
+        clientPrincipal = new OAuth2ClientAuthenticationToken(registeredClient,
+                ClientAuthenticationMethod.CLIENT_SECRET_BASIC, null);
+
+        converter = new CustomPasswordAuthenticationConverter();
+        tokenRequest = new MockHttpServletRequest("POST", "/oauth2/token");
+        tokenRequest.addParameter("grant_type", "password");
+        tokenRequest.addParameter("username", USERNAME);
+        tokenRequest.addParameter("password", PASSWORD);
+        tokenRequest.addParameter("scope", "read write");
+
+        AuthorizationServerConfig config = new AuthorizationServerConfig();
+        ReflectionTestUtils.setField(config, "jwtSigningAlgorithm", "RS256");
+        JWKSource<SecurityContext> jwkSource = new ImmutableJWKSet<>(new JWKSet(Jwks.generate(SignatureAlgorithm.RS256)));
+        jwtGenerator = new JwtGenerator(new NimbusJwtEncoder(jwkSource));
+        jwtGenerator.setJwtCustomizer(config.tokenCustomizer());
+
+        User user = new User(1L, "Alex Brown", USERNAME, PASSWORD);
+        user.getRoles().add(new Role(1L, "ROLE_STUDENT"));
+        user.getRoles().add(new Role(2L, "ROLE_INSTRUCTOR"));
+        // Bounded so that the authorizations saved on every call don't pile up during a run
+        OAuth2AuthorizationService authorizationService = new BoundedInMemoryOAuth2AuthorizationService(1000);
+        passwordVerifier = new PasswordVerifier(NoOpPasswordEncoder.getInstance(), 1, 100, Duration.ofSeconds(30),
+                new SimpleMeterRegistry());
+        provider = new CustomPasswordAuthenticationProvider(authorizationService,
+                new DelegatingOAuth2TokenGenerator(jwtGenerator, new OAuth2AccessTokenGenerator()),
+                username -> user, passwordVerifier);
+
+        AuthorizationServerSettings settings = AuthorizationServerSettings.builder().build();
+        authorizationServerContext = new AuthorizationServerContext() {
+            @Override
+            public String getIssuer() {
+                return "http://localhost:8080";
+            }
+
+            @Override
+            public AuthorizationServerSettings getAuthorizationServerSettings() {
+                return settings;
+            }
+        };
+
+        OAuth2ClientAuthenticationToken userClientPrincipal = new OAuth2ClientAuthenticationToken(registeredClient,
+                ClientAuthenticationMethod.CLIENT_SECRET_BASIC, null);
+        userClientPrincipal.setDetails(new CustomUserAuthorities(user.getId(), USERNAME, user.getAuthorities()));
+        tokenContext = DefaultOAuth2TokenContext.builder()
+                .registeredClient(registeredClient)
+                .principal(userClientPrincipal)
+                .authorizationServerContext(authorizationServerContext)
+                .authorizedScopes(Set.of())
+                .authorizationGrantType(new AuthorizationGrantType("password"))
+                .tokenType(OAuth2TokenType.ACCESS_TOKEN)
+                .build();
+
+        jwtDecoder = OAuth2AuthorizationServerConfiguration.jwtDecoder(jwkSource);
+        RoleAuthorityRegistry roleAuthorityRegistry = new RoleAuthorityRegistry(List.of(new Role(1L, "ROLE_STUDENT"),
+                new Role(2L, "ROLE_INSTRUCTOR"), new Role(3L, "ROLE_ADMIN")));
+        jwtAuthenticationConverter = new ResourceServerConfig().jwtAuthenticationConverter(roleAuthorityRegistry);
+        token = generateToken().getTokenValue();
+        jwt = jwtDecoder.decode(token);
+    }
+
+    @TearDown
+    public void tearDown() {
+        passwordVerifier.shutdown();
+    }
+
+    @Benchmark
+    public Authentication parseTokenRequest() {
+        SecurityContextHolder.getContext().setAuthentication(clientPrincipal);
+        try {
+            return converter.convert(tokenRequest);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @Benchmark
+    public Authentication authenticate() {
+        AuthorizationServerContextHolder.setContext(authorizationServerContext);
+        try {
+            Map<String, Object> parameters = Map.of("username", USERNAME, "password", PASSWORD);
+            return provider.authenticate(new CustomPasswordAuthenticationToken(clientPrincipal, null, parameters));
+        } finally {
+            AuthorizationServerContextHolder.resetContext();
+        }
+    }
+
+    @Benchmark
+    public Jwt generateToken() {
+        return jwtGenerator.generate(tokenContext);
+    }
+
+    @Benchmark
+    public Jwt decodeToken() {
+        return jwtDecoder.decode(token);
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken convertAuthorities() {
+        return jwtAuthenticationConverter.convert(jwt);
+    }
+}
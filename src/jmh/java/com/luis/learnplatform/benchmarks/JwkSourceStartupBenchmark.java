@@ -0,0 +1,92 @@
+package com.luis.learnplatform.benchmarks;
+
+import com.luis.learnplatform.config.jwk.JdbcJwkSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of the signing key source on H2: the first start, which generates and stores
+ * a key, and a restart, which loads the stored key instead.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwkSourceStartupBenchmark {
+
+    private static final Duration ROTATION_INTERVAL = Duration.ofDays(7);
+    private static final Duration ACTIVATION_DELAY = Duration.ZERO;
+    private static final Duration RETENTION = Duration.ofDays(1);
+
+    @State(Scope.Benchmark)
+    public static class Database {
+
+        @Param({"RS256", "ES256"})
+        public String algorithm;
+
+        EmbeddedDatabase database;
+        JdbcTemplate jdbcTemplate;
+        SignatureAlgorithm signatureAlgorithm;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            database = new EmbeddedDatabaseBuilder()
+                    .generateUniqueName(true)
+                    .setType(EmbeddedDatabaseType.H2)
+                    .addScript("classpath:schema.sql")
+                    .build();
+            jdbcTemplate = new JdbcTemplate(database);
+            signatureAlgorithm = SignatureAlgorithm.from(algorithm);
+            prepare();
+        }
+
+        void prepare() {
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            database.shutdown();
+        }
+
+        JdbcJwkSource start() {
+            return new JdbcJwkSource(jdbcTemplate, signatureAlgorithm, ROTATION_INTERVAL, ACTIVATION_DELAY, RETENTION);
+        }
+    }
+
+    // Each start generates a key, which is a long enough call for a per-invocation cleanup
+    @State(Scope.Benchmark)
+    public static class EmptyDatabase extends Database {
+
+        @Setup(Level.Invocation)
+        public void deleteKeys() {
+            jdbcTemplate.update("DELETE FROM oauth2_jwk");
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class StoredKey extends Database {
+
+        @Override
+        void prepare() {
+            start();
+        }
+    }
+
+    @Benchmark
+    public JdbcJwkSource generateKey(EmptyDatabase state) {
+        return state.start();
+    }
+
+    @Benchmark
+    public JdbcJwkSource reuseStoredKey(StoredKey state) {
+        return state.start();
+    }
+}
@@ -0,0 +1,84 @@
+package com.luis.learnplatform.benchmarks;
+
+import com.luis.learnplatform.config.jwk.Jwks;
+import com.luis.learnplatform.config.jwt.CachingJwtDecoder;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.*;
+import org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of decoding an access token: plain Nimbus verification, a cache miss (cold) and a
+ * cache hit (warm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtDecoderBenchmark {
+
+    private static final int TOKENS = 1024;
+
+    private JwtDecoder uncachedDecoder;
+    private CachingJwtDecoder coldDecoder;
+    private CachingJwtDecoder warmDecoder;
+    private String[] tokens;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        JWKSource<SecurityContext> jwkSource = new ImmutableJWKSet<>(new JWKSet(Jwks.generate(SignatureAlgorithm.RS256)));
+        JwtEncoder encoder = new NimbusJwtEncoder(jwkSource);
+        Instant now = Instant.now();
+        tokens = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            JwtClaimsSet claims = JwtClaimsSet.builder()
+                    .subject("myclientid")
+                    .issuedAt(now)
+                    .expiresAt(now.plusSeconds(86400))
+                    .claim("username", "user" + i + "@learnplatform.com")
+                    .claim("authorities", List.of("ROLE_STUDENT"))
+                    .build();
+            tokens[i] = encoder.encode(JwtEncoderParameters.from(claims)).getTokenValue();
+        }
+
+        uncachedDecoder = OAuth2AuthorizationServerConfiguration.jwtDecoder(jwkSource);
+        // Holds a single entry while the benchmark cycles through all tokens, so every call misses
+        coldDecoder = new CachingJwtDecoder(uncachedDecoder, 1, new SimpleMeterRegistry());
+        warmDecoder = new CachingJwtDecoder(uncachedDecoder, TOKENS, new SimpleMeterRegistry());
+        for (String token : tokens) {
+            warmDecoder.decode(token);
+        }
+    }
+
+    @Benchmark
+    public Jwt uncached() {
+        return uncachedDecoder.decode(nextToken());
+    }
+
+    @Benchmark
+    public Jwt cachedCold() {
+        return coldDecoder.decode(nextToken());
+    }
+
+    @Benchmark
+    public Jwt cachedWarm() {
+        return warmDecoder.decode(nextToken());
+    }
+
+    private String nextToken() {
+        next = (next + 1) % TOKENS;
+        return tokens[next];
+    }
+}
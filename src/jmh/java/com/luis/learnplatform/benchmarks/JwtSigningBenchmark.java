@@ -0,0 +1,64 @@
+package com.luis.learnplatform.benchmarks;
+
+import com.luis.learnplatform.config.jwk.Jwks;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.*;
+import org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signing and verification throughput of an access token per signing algorithm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtSigningBenchmark {
+
+    @Param({"RS256", "ES256"})
+    public String algorithm;
+
+    private JwtEncoder encoder;
+    private JwtDecoder decoder;
+    private JwtEncoderParameters parameters;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        SignatureAlgorithm signatureAlgorithm = SignatureAlgorithm.from(algorithm);
+        JWKSource<SecurityContext> jwkSource = new ImmutableJWKSet<>(new JWKSet(Jwks.generate(signatureAlgorithm)));
+        encoder = new NimbusJwtEncoder(jwkSource);
+        decoder = OAuth2AuthorizationServerConfiguration.jwtDecoder(jwkSource);
+
+        Instant now = Instant.now();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .subject("myclientid")
+                .issuedAt(now)
+                .expiresAt(now.plusSeconds(86400))
+                .claim("username", "alex@gmail.com")
+                .claim("authorities", List.of("ROLE_STUDENT"))
+                .build();
+        parameters = JwtEncoderParameters.from(JwsHeader.with(signatureAlgorithm).build(), claims);
+        token = encoder.encode(parameters).getTokenValue();
+    }
+
+    @Benchmark
+    public Jwt sign() {
+        return encoder.encode(parameters);
+    }
+
+    @Benchmark
+    public Jwt verify() {
+        return decoder.decode(token);
+    }
+}
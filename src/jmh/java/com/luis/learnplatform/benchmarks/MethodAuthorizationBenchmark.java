@@ -0,0 +1,106 @@
+package com.luis.learnplatform.benchmarks;
+
+import com.luis.learnplatform.config.access.RequiresRole;
+import com.luis.learnplatform.config.access.RoleAuthorizationManager;
+import com.luis.learnplatform.config.access.SelfOrAdmin;
+import org.aopalliance.intercept.MethodInvocation;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authorization.AuthorizationResult;
+import org.springframework.security.authorization.method.PreAuthorizeAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Authorization decision for a role check and a self-or-admin check, evaluated by the SpEL
+ * based {@code @PreAuthorize} manager and by {@link RoleAuthorizationManager}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MethodAuthorizationBenchmark {
+
+    private static final Long USER_ID = 3L;
+
+    private PreAuthorizeAuthorizationManager expressionManager;
+    private RoleAuthorizationManager roleManager;
+    private Supplier<Authentication> authentication;
+    private MethodInvocation expressionHasRole;
+    private MethodInvocation expressionSelfOrAdmin;
+    private MethodInvocation requiresRole;
+    private MethodInvocation selfOrAdmin;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        expressionManager = new PreAuthorizeAuthorizationManager();
+        roleManager = new RoleAuthorizationManager();
+
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .claim("username", "maria@gmail.com")
+                .claim("user_id", USER_ID)
+                .build();
+        // Not an admin, so the self-or-admin checks go on to compare the user id
+        Authentication token = new JwtAuthenticationToken(jwt,
+                AuthorityUtils.createAuthorityList("ROLE_STUDENT", "ROLE_INSTRUCTOR"));
+        authentication = () -> token;
+
+        Controller controller = new Controller();
+        expressionHasRole = invocation(controller, "expressionHasRole");
+        expressionSelfOrAdmin = invocation(controller, "expressionSelfOrAdmin");
+        requiresRole = invocation(controller, "requiresRole");
+        selfOrAdmin = invocation(controller, "selfOrAdmin");
+    }
+
+    @Benchmark
+    public AuthorizationResult hasRoleExpression() {
+        return expressionManager.authorize(authentication, expressionHasRole);
+    }
+
+    @Benchmark
+    public AuthorizationResult hasRoleCompiled() {
+        return roleManager.authorize(authentication, requiresRole);
+    }
+
+    @Benchmark
+    public AuthorizationResult selfOrAdminExpression() {
+        return expressionManager.authorize(authentication, expressionSelfOrAdmin);
+    }
+
+    @Benchmark
+    public AuthorizationResult selfOrAdminCompiled() {
+        return roleManager.authorize(authentication, selfOrAdmin);
+    }
+
+    private static MethodInvocation invocation(Controller controller, String name) throws NoSuchMethodException {
+        return new SimpleMethodInvocation(controller, Controller.class.getMethod(name, Long.class), USER_ID);
+    }
+
+    public static class Controller {
+
+        @PreAuthorize("hasRole('ROLE_ADMIN')")
+        public void expressionHasRole(Long id) {
+        }
+
+        @PreAuthorize("hasRole('ROLE_ADMIN') or #id == principal.claims['user_id']")
+        public void expressionSelfOrAdmin(Long id) {
+        }
+
+        @RequiresRole("ROLE_ADMIN")
+        public void requiresRole(Long id) {
+        }
+
+        @SelfOrAdmin("id")
+        public void selfOrAdmin(Long id) {
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.luis.learnplatform.benchmarks;
+
+import com.luis.learnplatform.config.AuthorizationServerConfig;
+import com.luis.learnplatform.config.customgrant.CachingClientSecretPasswordEncoder;
+import com.luis.learnplatform.config.customgrant.CustomPasswordAuthenticationProvider;
+import com.luis.learnplatform.config.customgrant.CustomPasswordAuthenticationToken;
+import com.luis.learnplatform.config.customgrant.PasswordVerifier;
+import com.luis.learnplatform.config.jwk.Jwks;
+import com.luis.learnplatform.entities.Role;
+import com.luis.learnplatform.entities.User;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.server.authorization.InMemoryOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.authentication.ClientSecretAuthenticationProvider;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContext;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContextHolder;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat;
+import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
+import org.springframework.security.oauth2.server.authorization.token.DelegatingOAuth2TokenGenerator;
+import org.springframework.security.oauth2.server.authorization.token.JwtGenerator;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2AccessTokenGenerator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work done by the token endpoint for one password grant: client authentication followed by
+ * user authentication and token issuance, with and without the client secret cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class TokenEndpointBenchmark {
+
+    private static final String CLIENT_ID = "myclientid";
+    private static final String CLIENT_SECRET = "myclientsecret";
+    private static final String USERNAME = "alex@gmail.com";
+    private static final String PASSWORD = "12345678";
+
+    @Param({"bcrypt", "cached"})
+    public String clientSecretVerification;
+
+    private ClientSecretAuthenticationProvider clientAuthenticationProvider;
+    private CustomPasswordAuthenticationProvider passwordAuthenticationProvider;
+    private PasswordVerifier passwordVerifier;
+    private AuthorizationServerContext authorizationServerContext;
+
+    @Setup
+    public void setUp() {
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder();
+
+        RegisteredClient registeredClient = RegisteredClient.withId(CLIENT_ID)
+                .clientId(CLIENT_ID)
+                .clientSecret(bcrypt.encode(CLIENT_SECRET))
+                .scope("read")
+                .scope("write")
+                .authorizationGrantType(new AuthorizationGrantType("password"))
+                .tokenSettings(TokenSettings.builder()
+                        .accessTokenFormat(OAuth2TokenFormat.SELF_CONTAINED)
+                        .accessTokenTimeToLive(Duration.ofHours(1))
+                        .build())
+                .build();
+        OAuth2AuthorizationService authorizationService = new InMemoryOAuth2AuthorizationService();
+
+        clientAuthenticationProvider = new ClientSecretAuthenticationProvider(
+                new InMemoryRegisteredClientRepository(registeredClient), authorizationService);
+        if (clientSecretVerification.equals("cached")) {
+            clientAuthenticationProvider.setPasswordEncoder(
+                    new CachingClientSecretPasswordEncoder(bcrypt, 1000, Duration.ofMinutes(5)));
+        } else {
+            clientAuthenticationProvider.setPasswordEncoder(bcrypt);
+        }
+
+        AuthorizationServerConfig config = new AuthorizationServerConfig();
+        ReflectionTestUtils.setField(config, "jwtSigningAlgorithm", "RS256");
+        JWKSource<SecurityContext> jwkSource = new ImmutableJWKSet<>(new JWKSet(Jwks.generate(SignatureAlgorithm.RS256)));
+        JwtGenerator jwtGenerator = new JwtGenerator(new NimbusJwtEncoder(jwkSource));
+        jwtGenerator.setJwtCustomizer(config.tokenCustomizer());
+
+        User user = new User(1L, "Alex Brown", USERNAME, bcrypt.encode(PASSWORD));
+        user.getRoles().add(new Role(1L, "ROLE_STUDENT"));
+        passwordVerifier = new PasswordVerifier(bcrypt, 4, 100, Duration.ofSeconds(30), new SimpleMeterRegistry());
+        passwordAuthenticationProvider = new CustomPasswordAuthenticationProvider(authorizationService,
+                new DelegatingOAuth2TokenGenerator(jwtGenerator, new OAuth2AccessTokenGenerator()),
+                username -> user, passwordVerifier);
+
+        AuthorizationServerSettings settings = AuthorizationServerSettings.builder().build();
+        authorizationServerContext = new AuthorizationServerContext() {
+            @Override
+            public String getIssuer() {
+                return "http://localhost:8080";
+            }
+
+            @Override
+            public AuthorizationServerSettings getAuthorizationServerSettings() {
+                return settings;
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        passwordVerifier.shutdown();
+    }
+
+    @Benchmark
+    public Authentication passwordGrant() {
+        AuthorizationServerContextHolder.setContext(authorizationServerContext);
+        try {
+            OAuth2ClientAuthenticationToken clientPrincipal = (OAuth2ClientAuthenticationToken) clientAuthenticationProvider
+                    .authenticate(new OAuth2ClientAuthenticationToken(CLIENT_ID,
+                            ClientAuthenticationMethod.CLIENT_SECRET_BASIC, CLIENT_SECRET, null));
+            Map<String, Object> parameters = Map.of("username", USERNAME, "password", PASSWORD);
+            return passwordAuthenticationProvider.authenticate(
+                    new CustomPasswordAuthenticationToken(clientPrincipal, null, parameters));
+        } finally {
+            AuthorizationServerContextHolder.resetContext();
+        }
+    }
+}
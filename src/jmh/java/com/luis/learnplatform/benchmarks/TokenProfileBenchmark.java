@@ -0,0 +1,145 @@
+package com.luis.learnplatform.benchmarks;
+
+import com.luis.learnplatform.config.AuthorizationServerConfig;
+import com.luis.learnplatform.config.ResourceServerConfig;
+import com.luis.learnplatform.config.customgrant.CustomUserAuthorities;
+import com.luis.learnplatform.config.jwk.Jwks;
+import com.luis.learnplatform.config.jwt.RoleAuthorityRegistry;
+import com.luis.learnplatform.entities.Role;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContext;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.token.DefaultOAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.JwtGenerator;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access token size and authority mapping per token profile. The header size is reported by
+ * {@code authorizationHeader} as the {@code headerBytes} counter; run with {@code -prof gc}
+ * to compare allocation per converted request against the string-splitting converter used
+ * before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenProfileBenchmark {
+
+    @Param({"full", "compact"})
+    public String profile;
+
+    private JwtAuthenticationConverter jwtAuthenticationConverter;
+    private JwtAuthenticationConverter stringJwtAuthenticationConverter;
+    private String token;
+    private Jwt jwt;
+    private Jwt fullJwt;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class HeaderSize {
+
+        public long headerBytes;
+    }
+
+    @Setup
+    public void setUp() {
+        List<Role> roles = List.of(new Role(1L, "ROLE_STUDENT"), new Role(2L, "ROLE_INSTRUCTOR"),
+                new Role(3L, "ROLE_ADMIN"));
+        RoleAuthorityRegistry roleAuthorityRegistry = new RoleAuthorityRegistry(roles);
+        JWKSource<SecurityContext> jwkSource = new ImmutableJWKSet<>(new JWKSet(Jwks.generate(SignatureAlgorithm.RS256)));
+        JwtDecoder jwtDecoder = OAuth2AuthorizationServerConfiguration.jwtDecoder(jwkSource);
+
+        token = generateToken(jwkSource, roleAuthorityRegistry, roles, profile);
+        jwt = jwtDecoder.decode(token);
+        fullJwt = jwtDecoder.decode(generateToken(jwkSource, roleAuthorityRegistry, roles, "full"));
+
+        jwtAuthenticationConverter = new ResourceServerConfig().jwtAuthenticationConverter(roleAuthorityRegistry);
+
+        JwtGrantedAuthoritiesConverter grantedAuthoritiesConverter = new JwtGrantedAuthoritiesConverter();
+        grantedAuthoritiesConverter.setAuthoritiesClaimName("authorities");
+        grantedAuthoritiesConverter.setAuthorityPrefix("");
+        stringJwtAuthenticationConverter = new JwtAuthenticationConverter();
+        stringJwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(grantedAuthoritiesConverter);
+    }
+
+    // Assigned rather than summed, so the counter holds the size of one header
+    @Benchmark
+    public String authorizationHeader(HeaderSize headerSize) {
+        String header = "Bearer " + token;
+        headerSize.headerBytes = header.length();
+        return header;
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken convertAuthorities() {
+        return jwtAuthenticationConverter.convert(jwt);
+    }
+
+    // Baseline: the JwtGrantedAuthoritiesConverter previously configured, on a full profile token
+    @Benchmark
+    public AbstractAuthenticationToken convertAuthoritiesFromStrings() {
+        return stringJwtAuthenticationConverter.convert(fullJwt);
+    }
+
+    private static String generateToken(JWKSource<SecurityContext> jwkSource, RoleAuthorityRegistry roleAuthorityRegistry,
+                                        List<Role> roles, String profile) {
+        AuthorizationServerConfig config = new AuthorizationServerConfig();
+        ReflectionTestUtils.setField(config, "jwtSigningAlgorithm", "RS256");
+        ReflectionTestUtils.setField(config, "jwtTokenProfile", profile);
+        ReflectionTestUtils.setField(config, "roleAuthorityRegistry", roleAuthorityRegistry);
+        JwtGenerator jwtGenerator = new JwtGenerator(new NimbusJwtEncoder(jwkSource));
+        jwtGenerator.setJwtCustomizer(config.tokenCustomizer());
+
+        RegisteredClient registeredClient = RegisteredClient.withId("myclientid")
+                .clientId("myclientid")
+                .clientSecret("myclientsecret")
+                .authorizationGrantType(new AuthorizationGrantType("password"))
+                .build();
+        OAuth2ClientAuthenticationToken principal = new OAuth2ClientAuthenticationToken(registeredClient,
+                ClientAuthenticationMethod.CLIENT_SECRET_BASIC, null);
+        principal.setDetails(new CustomUserAuthorities(1L, "alex@gmail.com", roles));
+        AuthorizationServerSettings settings = AuthorizationServerSettings.builder().build();
+
+        return jwtGenerator.generate(DefaultOAuth2TokenContext.builder()
+                .registeredClient(registeredClient)
+                .principal(principal)
+                .authorizationServerContext(new AuthorizationServerContext() {
+                    @Override
+                    public String getIssuer() {
+                        return "http://localhost:8080";
+                    }
+
+                    @Override
+                    public AuthorizationServerSettings getAuthorizationServerSettings() {
+                        return settings;
+                    }
+                })
+                .authorizedScopes(Set.of())
+                .authorizationGrantType(new AuthorizationGrantType("password"))
+                .tokenType(OAuth2TokenType.ACCESS_TOKEN)
+                .build()).getTokenValue();
+    }
+}
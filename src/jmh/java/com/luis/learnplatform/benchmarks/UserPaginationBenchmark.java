@@ -0,0 +1,130 @@
+package com.luis.learnplatform.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of one page of {@code GET /users} with offset paging (page query plus the count
+ * query behind {@code Page}) and with keyset paging from a cursor, on H2 with the
+ * {@code (name, id)} index. The statements match the SQL Hibernate generates for
+ * {@code findAll(Pageable)} and {@code UserRepository.findPageAfter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserPaginationBenchmark {
+
+    private static final int USERS = 200_000;
+    private static final int PAGE_SIZE = 10;
+    private static final String[] FIRST_NAMES = {"Alex", "Ana", "Bob", "Carla", "Daniel", "Elisa", "Felipe", "Gabriela",
+            "Hugo", "Ines", "Joana", "Jose", "Lucas", "Maria", "Nuno", "Olivia", "Pedro", "Rita", "Sofia", "Tiago"};
+    private static final String[] LAST_NAMES = {"Almeida", "Barbosa", "Brown", "Cardoso", "Costa", "Dias", "Ferreira",
+            "Gomes", "Green", "Lima", "Lopes", "Martins", "Melo", "Moreira", "Nunes", "Oliveira", "Pereira", "Pinto",
+            "Ribeiro", "Rocha", "Santos", "Silva", "Sousa", "Teixeira", "Vieira"};
+
+    @Param({"1", "10000"})
+    public int page;
+
+    private Connection connection;
+    private PreparedStatement offsetQuery;
+    private PreparedStatement countQuery;
+    private PreparedStatement keysetQuery;
+    private String cursorName;
+    private long cursorId;
+
+    @Setup
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:pagination;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS tb_user");
+            statement.execute("CREATE TABLE tb_user (id BIGINT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(255), "
+                    + "email VARCHAR(255), password VARCHAR(255))");
+            statement.execute("CREATE INDEX idx_user_name_id ON tb_user (name, id)");
+        }
+        // Each name is shared by a few hundred users, so the id tie-breaker matters
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO tb_user (name, email, password) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < USERS; i++) {
+                insert.setString(1, FIRST_NAMES[i % FIRST_NAMES.length] + " " + LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length]);
+                insert.setString(2, "user" + i + "@learnplatform.com");
+                insert.setString(3, "$2a$10$Bj5WmQKQSPjJ4ckqs2YUpuwwTnW07E6zsnRNtx5Xc7gexR1UeOodm");
+                insert.addBatch();
+                if (i % 1000 == 999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+
+        offsetQuery = connection.prepareStatement(
+                "SELECT id, name, email, password FROM tb_user ORDER BY name OFFSET ? ROWS FETCH FIRST ? ROWS ONLY");
+        countQuery = connection.prepareStatement("SELECT COUNT(id) FROM tb_user");
+        keysetQuery = connection.prepareStatement(
+                "SELECT id, name, email, password FROM tb_user WHERE name >= ? AND (name > ? OR id > ?) "
+                        + "ORDER BY name, id FETCH FIRST ? ROWS ONLY");
+
+        // The cursor a client holds after reading the pages before this one
+        cursorName = "";
+        cursorId = 0;
+        if (page > 1) {
+            try (PreparedStatement last = connection.prepareStatement(
+                    "SELECT name, id FROM tb_user ORDER BY name, id OFFSET ? ROWS FETCH FIRST 1 ROWS ONLY")) {
+                last.setInt(1, (page - 1) * PAGE_SIZE - 1);
+                try (ResultSet resultSet = last.executeQuery()) {
+                    resultSet.next();
+                    cursorName = resultSet.getString(1);
+                    cursorId = resultSet.getLong(2);
+                }
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE tb_user");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public void offset(Blackhole blackhole) throws SQLException {
+        offsetQuery.setInt(1, (page - 1) * PAGE_SIZE);
+        offsetQuery.setInt(2, PAGE_SIZE);
+        consume(offsetQuery, blackhole);
+        consume(countQuery, blackhole);
+    }
+
+    @Benchmark
+    public void keyset(Blackhole blackhole) throws SQLException {
+        keysetQuery.setString(1, cursorName);
+        keysetQuery.setString(2, cursorName);
+        keysetQuery.setLong(3, cursorId);
+        // One extra row tells whether there is a next page
+        keysetQuery.setInt(4, PAGE_SIZE + 1);
+        consume(keysetQuery, blackhole);
+    }
+
+    private static void consume(PreparedStatement query, Blackhole blackhole) throws SQLException {
+        try (ResultSet resultSet = query.executeQuery()) {
+            while (resultSet.next()) {
+                blackhole.consume(resultSet.getLong(1));
+                blackhole.consume(resultSet.getString(2));
+            }
+        }
+    }
+}
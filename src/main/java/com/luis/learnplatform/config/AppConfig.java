@@ -1,16 +1,76 @@
 package com.luis.learnplatform.config;
 
+import com.luis.learnplatform.config.jwt.RoleAuthorityRegistry;
+import com.luis.learnplatform.config.password.BCryptCostCalibrator;
+import com.luis.learnplatform.repositories.RoleRepository;
+import com.luis.learnplatform.services.TokenRevocationService;
+import com.luis.learnplatform.services.UserDetailsCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.time.Duration;
+import java.util.Map;
+
 @Configuration
+@EnableScheduling
 public class AppConfig {
 
+    @Value("${security.jwt.duration}")
+    private Integer jwtDurationSeconds;
+
+    @Value("${security.jwt.refresh-token-duration}")
+    private Integer refreshTokenDurationSeconds;
+
+    @Value("${security.password-hash.budget}")
+    private Integer passwordHashBudgetMillis;
+
+    @Value("${security.password-hash.min-cost}")
+    private Integer passwordHashMinCost;
+
+    @Value("${security.password-hash.max-cost}")
+    private Integer passwordHashMaxCost;
+
+    @Value("${security.user-details-cache.maximum-size}")
+    private Long userDetailsCacheMaximumSize;
+
+    @Value("${security.user-details-cache.ttl}")
+    private Integer userDetailsCacheTtlSeconds;
+
+    @Bean
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        BCryptCostCalibrator.Calibration calibration = new BCryptCostCalibrator(
+                Duration.ofMillis(passwordHashBudgetMillis), passwordHashMinCost, passwordHashMaxCost).calibrate();
+        calibration.bindTo(meterRegistry);
+
+        // Hashes stored without an {id} prefix, like the seed data, are BCrypt and get upgraded on login
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(calibration.cost());
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        passwordEncoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return passwordEncoder;
+    }
+
+    @Bean
+    public RoleAuthorityRegistry roleAuthorityRegistry(RoleRepository roleRepository) {
+        return new RoleAuthorityRegistry(roleRepository.findAll());
+    }
+
+    @Bean
+    public UserDetailsCache userDetailsCache(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        return new UserDetailsCache(jdbcTemplate, userDetailsCacheMaximumSize,
+                Duration.ofSeconds(userDetailsCacheTtlSeconds), meterRegistry);
+    }
+
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public TokenRevocationService tokenRevocationService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        return new TokenRevocationService(jdbcTemplate, Duration.ofSeconds(jwtDurationSeconds),
+                Duration.ofSeconds(refreshTokenDurationSeconds), meterRegistry);
     }
 
 }
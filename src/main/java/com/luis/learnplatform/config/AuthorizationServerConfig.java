@@ -1,31 +1,52 @@
 package com.luis.learnplatform.config;
 
+import com.luis.learnplatform.config.authorization.BoundedInMemoryOAuth2AuthorizationService;
+import com.luis.learnplatform.config.authorization.ExpiringJdbcOAuth2AuthorizationService;
+import com.luis.learnplatform.config.customgrant.CachingClientSecretPasswordEncoder;
 import com.luis.learnplatform.config.customgrant.CustomPasswordAuthenticationConverter;
 import com.luis.learnplatform.config.customgrant.CustomPasswordAuthenticationProvider;
+import com.luis.learnplatform.config.customgrant.CustomRefreshTokenAuthenticationProvider;
+import com.luis.learnplatform.config.customgrant.CustomTokenErrorResponseHandler;
+import com.luis.learnplatform.config.customgrant.CustomTokenRevocationAuthenticationProvider;
 import com.luis.learnplatform.config.customgrant.CustomUserAuthorities;
-import com.nimbusds.jose.jwk.JWKSet;
-import com.nimbusds.jose.jwk.RSAKey;
+import com.luis.learnplatform.config.customgrant.LoginAttemptThrottle;
+import com.luis.learnplatform.config.customgrant.PasswordUpgrader;
+import com.luis.learnplatform.config.customgrant.PasswordVerifier;
+import com.luis.learnplatform.config.jwk.JdbcJwkSource;
+import com.luis.learnplatform.config.jwt.CachingJwtDecoder;
+import com.luis.learnplatform.config.jwt.RevocationCheckingJwtDecoder;
+import com.luis.learnplatform.config.jwt.RoleAuthoritiesConverter;
+import com.luis.learnplatform.config.jwt.RoleAuthorityRegistry;
+import com.luis.learnplatform.repositories.UserRepository;
+import com.luis.learnplatform.services.TokenRevocationService;
 import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
 import org.springframework.security.oauth2.server.authorization.InMemoryOAuth2AuthorizationConsentService;
-import org.springframework.security.oauth2.server.authorization.InMemoryOAuth2AuthorizationService;
 import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationConsentService;
 import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.authentication.ClientSecretAuthenticationProvider;
 import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2RefreshTokenAuthenticationProvider;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2TokenRevocationAuthenticationProvider;
 import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
@@ -38,13 +59,10 @@ import org.springframework.security.oauth2.server.authorization.settings.TokenSe
 import org.springframework.security.oauth2.server.authorization.token.*;
 import org.springframework.security.web.SecurityFilterChain;
 
-import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.interfaces.RSAPublicKey;
 import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Configuration
 public class AuthorizationServerConfig {
@@ -58,23 +76,113 @@ public class AuthorizationServerConfig {
     @Value("${security.jwt.duration}")
     private Integer jwtDurationSeconds;
 
+    @Value("${security.jwt.refresh-token-duration}")
+    private Integer refreshTokenDurationSeconds;
+
+    @Value("${security.client-secret-cache.maximum-size}")
+    private Long clientSecretCacheMaximumSize;
+
+    @Value("${security.client-secret-cache.ttl}")
+    private Integer clientSecretCacheTtlSeconds;
+
+    @Value("${security.jwt.token-profile}")
+    private String jwtTokenProfile;
+
+    @Value("${security.jwt.signing-algorithm}")
+    private String jwtSigningAlgorithm;
+
+    @Value("${security.jwt.key-rotation-interval}")
+    private Integer jwtKeyRotationIntervalSeconds;
+
+    @Value("${security.jwt.key-refresh-interval}")
+    private Integer jwtKeyRefreshIntervalMillis;
+
+    @Value("${security.jwt.decoder-cache.maximum-size}")
+    private Long jwtDecoderCacheMaximumSize;
+
+    @Value("${security.authorization-store.type}")
+    private String authorizationStoreType;
+
+    @Value("${security.authorization-store.max-size}")
+    private Integer authorizationStoreMaxSize;
+
+    @Value("${security.password-verifier.pool-size}")
+    private Integer passwordVerifierPoolSize;
+
+    @Value("${security.password-verifier.queue-capacity}")
+    private Integer passwordVerifierQueueCapacity;
+
+    @Value("${security.password-verifier.timeout}")
+    private Integer passwordVerifierTimeoutMillis;
+
+    @Value("${security.password-hash.min-cost}")
+    private Integer passwordHashMinCost;
+
+    @Value("${security.password-upgrader.queue-capacity}")
+    private Integer passwordUpgraderQueueCapacity;
+
+    @Value("${security.login-throttle.max-failures-per-email}")
+    private Integer loginThrottleMaxFailuresPerEmail;
+
+    @Value("${security.login-throttle.max-failures-per-source}")
+    private Integer loginThrottleMaxFailuresPerSource;
+
+    @Value("${security.login-throttle.window}")
+    private Integer loginThrottleWindowSeconds;
+
+    @Value("${security.login-throttle.maximum-keys}")
+    private Long loginThrottleMaximumKeys;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RoleAuthorityRegistry roleAuthorityRegistry;
+
     @Bean
     @Order(2)
-    public SecurityFilterChain asSecurityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain asSecurityFilterChain(HttpSecurity http, PasswordVerifier passwordVerifier,
+                                                     LoginAttemptThrottle loginAttemptThrottle,
+                                                     PasswordUpgrader passwordUpgrader,
+                                                     TokenRevocationService tokenRevocationService) throws Exception {
 
         OAuth2AuthorizationServerConfiguration.applyDefaultSecurity(http);
 
+        PasswordEncoder clientSecretPasswordEncoder = new CachingClientSecretPasswordEncoder(passwordEncoder,
+                clientSecretCacheMaximumSize, Duration.ofSeconds(clientSecretCacheTtlSeconds));
+
+        CustomPasswordAuthenticationProvider passwordAuthenticationProvider = new CustomPasswordAuthenticationProvider(
+                authorizationService(), tokenGenerator(), userDetailsService, passwordVerifier);
+        passwordAuthenticationProvider.setLoginAttemptThrottle(loginAttemptThrottle);
+        passwordAuthenticationProvider.setPasswordUpgrader(passwordUpgrader);
+
+        CustomRefreshTokenAuthenticationProvider refreshTokenAuthenticationProvider = new CustomRefreshTokenAuthenticationProvider(
+                authorizationService(), tokenGenerator(), userDetailsService);
+        refreshTokenAuthenticationProvider.setTokenRevocationService(tokenRevocationService);
+
         // @formatter:off
         http.getConfigurer(OAuth2AuthorizationServerConfigurer.class)
+                .clientAuthentication(clientAuthentication -> clientAuthentication
+                        .authenticationProviders(providers -> providers.forEach(provider -> {
+                            if (provider instanceof ClientSecretAuthenticationProvider clientSecretProvider) {
+                                clientSecretProvider.setPasswordEncoder(clientSecretPasswordEncoder);
+                            }
+                        })))
                 .tokenEndpoint(tokenEndpoint -> tokenEndpoint
                         .accessTokenRequestConverter(new CustomPasswordAuthenticationConverter())
-                        .authenticationProvider(new CustomPasswordAuthenticationProvider(authorizationService(), tokenGenerator(), userDetailsService, passwordEncoder)));
+                        .authenticationProvider(passwordAuthenticationProvider)
+                        .authenticationProvider(refreshTokenAuthenticationProvider)
+                        .authenticationProviders(providers -> providers.removeIf(provider -> provider instanceof OAuth2RefreshTokenAuthenticationProvider))
+                        .errorResponseHandler(new CustomTokenErrorResponseHandler()))
+                .tokenRevocationEndpoint(tokenRevocationEndpoint -> tokenRevocationEndpoint
+                        .authenticationProvider(new CustomTokenRevocationAuthenticationProvider(authorizationService(), tokenRevocationService))
+                        .authenticationProviders(providers -> providers.removeIf(provider -> provider instanceof OAuth2TokenRevocationAuthenticationProvider)));
 
         http.oauth2ResourceServer(oauth2ResourceServer -> oauth2ResourceServer.jwt(Customizer.withDefaults()));
         // @formatter:on
@@ -82,9 +190,44 @@ public class AuthorizationServerConfig {
         return http.build();
     }
 
+    @Bean(destroyMethod = "shutdown")
+    public PasswordVerifier passwordVerifier(UserRepository userRepository, MeterRegistry meterRegistry) {
+        return new PasswordVerifier(passwordEncoder, unknownUserPassword(userRepository), passwordVerifierPoolSize,
+                passwordVerifierQueueCapacity, Duration.ofMillis(passwordVerifierTimeoutMillis), meterRegistry);
+    }
+
+    // Stored hashes keep their cost until their user logs in again, so a hash at the calibrated cost
+    // would make unknown emails slower than most registered ones; use the cost most of them have
+    private String unknownUserPassword(UserRepository userRepository) {
+        int cost = userRepository.findPasswordCostsByFrequency(Limit.of(1)).stream()
+                .filter(x -> x.matches("\\d{2}"))
+                .mapToInt(Integer::parseInt)
+                .filter(x -> x >= 4 && x <= 31)
+                .findFirst()
+                .orElse(passwordHashMinCost);
+        return "{bcrypt}" + new BCryptPasswordEncoder(cost).encode(UUID.randomUUID().toString());
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public PasswordUpgrader passwordUpgrader(UserDetailsPasswordService userDetailsPasswordService,
+                                             MeterRegistry meterRegistry) {
+        return new PasswordUpgrader(passwordEncoder, userDetailsPasswordService, passwordUpgraderQueueCapacity,
+                meterRegistry);
+    }
+
+    @Bean
+    public LoginAttemptThrottle loginAttemptThrottle(MeterRegistry meterRegistry) {
+        return new LoginAttemptThrottle(loginThrottleMaxFailuresPerEmail, loginThrottleMaxFailuresPerSource,
+                Duration.ofSeconds(loginThrottleWindowSeconds), loginThrottleMaximumKeys, meterRegistry);
+    }
+
     @Bean
     public OAuth2AuthorizationService authorizationService() {
-        return new InMemoryOAuth2AuthorizationService();
+        return switch (authorizationStoreType) {
+            case "jdbc" -> new ExpiringJdbcOAuth2AuthorizationService(jdbcTemplate, registeredClientRepository());
+            case "memory" -> new BoundedInMemoryOAuth2AuthorizationService(authorizationStoreMaxSize);
+            default -> throw new IllegalStateException("Unknown authorization store: " + authorizationStoreType);
+        };
     }
 
     @Bean
@@ -96,12 +239,13 @@ public class AuthorizationServerConfig {
     public RegisteredClientRepository registeredClientRepository() {
         // @formatter:off
         RegisteredClient registeredClient = RegisteredClient
-                .withId(UUID.randomUUID().toString())
+                .withId(clientId)
                 .clientId(clientId)
                 .clientSecret(passwordEncoder.encode(clientSecret))
                 .scope("read")
                 .scope("write")
                 .authorizationGrantType(new AuthorizationGrantType("password"))
+                .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
                 .tokenSettings(tokenSettings())
                 .clientSettings(clientSettings())
                 .build();
@@ -116,6 +260,8 @@ public class AuthorizationServerConfig {
         return TokenSettings.builder()
                 .accessTokenFormat(OAuth2TokenFormat.SELF_CONTAINED)
                 .accessTokenTimeToLive(Duration.ofSeconds(jwtDurationSeconds))
+                .refreshTokenTimeToLive(Duration.ofSeconds(refreshTokenDurationSeconds))
+                .reuseRefreshTokens(false)
                 .build();
         // @formatter:on
     }
@@ -132,11 +278,12 @@ public class AuthorizationServerConfig {
 
     @Bean
     public OAuth2TokenGenerator<? extends OAuth2Token> tokenGenerator() {
-        NimbusJwtEncoder jwtEncoder = new NimbusJwtEncoder(jwkSource());
+        NimbusJwtEncoder jwtEncoder = new NimbusJwtEncoder(jwkSource().signingKeySource());
         JwtGenerator jwtGenerator = new JwtGenerator(jwtEncoder);
         jwtGenerator.setJwtCustomizer(tokenCustomizer());
         OAuth2AccessTokenGenerator accessTokenGenerator = new OAuth2AccessTokenGenerator();
-        return new DelegatingOAuth2TokenGenerator(jwtGenerator, accessTokenGenerator);
+        OAuth2RefreshTokenGenerator refreshTokenGenerator = new OAuth2RefreshTokenGenerator();
+        return new DelegatingOAuth2TokenGenerator(jwtGenerator, accessTokenGenerator, refreshTokenGenerator);
     }
 
     @Bean
@@ -144,45 +291,46 @@ public class AuthorizationServerConfig {
         return context -> {
             OAuth2ClientAuthenticationToken principal = context.getPrincipal();
             CustomUserAuthorities user = (CustomUserAuthorities) principal.getDetails();
-            List<String> authorities = user.getAuthorities().stream().map(x -> x.getAuthority()).toList();
+            // Collected into an ArrayList so the claims stay readable by the JDBC authorization store
+            List<String> authorities = user.getAuthorities().stream().map(x -> x.getAuthority()).collect(Collectors.toList());
             if (context.getTokenType().getValue().equals("access_token")) {
-                // @formatter:off
-                context.getClaims()
-                        .claim("authorities", authorities)
-                        .claim("username", user.getUsername());
-                // @formatter:on
+                context.getJwsHeader().algorithm(signatureAlgorithm());
+                // Compact tokens carry the roles as a tb_role id mask and leave the email out when the id is known
+                Long roles = "compact".equals(jwtTokenProfile) ? roleAuthorityRegistry.toMask(user.getAuthorities()) : null;
+                if (roles != null) {
+                    context.getClaims().claim(RoleAuthoritiesConverter.ROLES_CLAIM, roles);
+                } else {
+                    context.getClaims().claim(RoleAuthoritiesConverter.AUTHORITIES_CLAIM, authorities);
+                }
+                if (roles == null || user.getUserId() == null) {
+                    context.getClaims().claim("username", user.getUsername());
+                }
+                if (user.getUserId() != null) {
+                    context.getClaims().claim("user_id", user.getUserId());
+                }
             }
         };
     }
 
     @Bean
-    public JwtDecoder jwtDecoder(JWKSource<SecurityContext> jwkSource) {
-        return OAuth2AuthorizationServerConfiguration.jwtDecoder(jwkSource);
+    public JwtDecoder jwtDecoder(JWKSource<SecurityContext> jwkSource, MeterRegistry meterRegistry,
+                                 TokenRevocationService tokenRevocationService) {
+        JwtDecoder cachingJwtDecoder = new CachingJwtDecoder(OAuth2AuthorizationServerConfiguration.jwtDecoder(jwkSource),
+                jwtDecoderCacheMaximumSize, meterRegistry);
+        return new RevocationCheckingJwtDecoder(cachingJwtDecoder, tokenRevocationService);
     }
 
     @Bean
-    public JWKSource<SecurityContext> jwkSource() {
-        RSAKey rsaKey = generateRsa();
-        JWKSet jwkSet = new JWKSet(rsaKey);
-        return (jwkSelector, securityContext) -> jwkSelector.select(jwkSet);
-    }
-
-    private static RSAKey generateRsa() {
-        KeyPair keyPair = generateRsaKey();
-        RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
-        RSAPrivateKey privateKey = (RSAPrivateKey) keyPair.getPrivate();
-        return new RSAKey.Builder(publicKey).privateKey(privateKey).keyID(UUID.randomUUID().toString()).build();
-    }
-
-    private static KeyPair generateRsaKey() {
-        KeyPair keyPair;
-        try {
-            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
-            keyPairGenerator.initialize(2048);
-            keyPair = keyPairGenerator.generateKeyPair();
-        } catch (Exception ex) {
-            throw new IllegalStateException(ex);
+    public JdbcJwkSource jwkSource() {
+        return new JdbcJwkSource(jdbcTemplate, signatureAlgorithm(), Duration.ofSeconds(jwtKeyRotationIntervalSeconds),
+                Duration.ofMillis(jwtKeyRefreshIntervalMillis), Duration.ofSeconds(jwtDurationSeconds));
+    }
+
+    private SignatureAlgorithm signatureAlgorithm() {
+        SignatureAlgorithm signatureAlgorithm = SignatureAlgorithm.from(jwtSigningAlgorithm);
+        if (signatureAlgorithm == null) {
+            throw new IllegalStateException("Unsupported JWT signing algorithm: " + jwtSigningAlgorithm);
         }
-        return keyPair;
+        return signatureAlgorithm;
     }
 }
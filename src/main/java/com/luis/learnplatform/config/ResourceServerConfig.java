@@ -1,19 +1,30 @@
 package com.luis.learnplatform.config;
 
+import com.luis.learnplatform.config.access.RequiresRole;
+import com.luis.learnplatform.config.access.RoleAuthorizationManager;
+import com.luis.learnplatform.config.access.SelfOrAdmin;
+import com.luis.learnplatform.config.jwt.RoleAuthoritiesConverter;
+import com.luis.learnplatform.config.jwt.RoleAuthorityRegistry;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.boot.autoconfigure.security.servlet.PathRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.annotation.Role;
 
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.authorization.method.AuthorizationInterceptorsOrder;
+import org.springframework.security.authorization.method.AuthorizationManagerBeforeMethodInterceptor;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
-import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
@@ -53,13 +64,23 @@ public class ResourceServerConfig {
 
 
     @Bean
-    public JwtAuthenticationConverter jwtAuthenticationConverter() {
-        JwtGrantedAuthoritiesConverter grantedAuthoritiesConverter = new JwtGrantedAuthoritiesConverter();
-        grantedAuthoritiesConverter.setAuthoritiesClaimName("authorities");  // Nome do claim no JWT
-        grantedAuthoritiesConverter.setAuthorityPrefix("");  // Prefixo (se necessário)
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor roleAuthorizationAdvisor() {
+        // @RequiresRole and @SelfOrAdmin, checked where @PreAuthorize would be but without SpEL
+        ComposablePointcut pointcut = new ComposablePointcut(new AnnotationMatchingPointcut(RequiresRole.class, true))
+                .union(new AnnotationMatchingPointcut(null, RequiresRole.class, true))
+                .union(new AnnotationMatchingPointcut(null, SelfOrAdmin.class, true));
+        AuthorizationManagerBeforeMethodInterceptor interceptor =
+                new AuthorizationManagerBeforeMethodInterceptor(pointcut, new RoleAuthorizationManager());
+        interceptor.setOrder(AuthorizationInterceptorsOrder.PRE_AUTHORIZE.getOrder());
+        return interceptor;
+    }
 
+    @Bean
+    public JwtAuthenticationConverter jwtAuthenticationConverter(RoleAuthorityRegistry roleAuthorityRegistry) {
+        // Reads both the "roles" mask and the "authorities" list, returning shared authority instances
         JwtAuthenticationConverter jwtAuthenticationConverter = new JwtAuthenticationConverter();
-        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(grantedAuthoritiesConverter);
+        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(new RoleAuthoritiesConverter(roleAuthorityRegistry));
         return jwtAuthenticationConverter;
     }
 
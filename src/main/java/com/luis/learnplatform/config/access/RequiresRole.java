@@ -0,0 +1,16 @@
+package com.luis.learnplatform.config.access;
+
+import java.lang.annotation.*;
+
+/**
+ * Allows the call when the current user has any of the given roles, like
+ * {@code @PreAuthorize("hasAnyRole(...)")} but decided by {@link RoleAuthorizationManager}
+ * without evaluating an expression. The {@code ROLE_} prefix is optional.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RequiresRole {
+
+    String[] value();
+}
@@ -0,0 +1,151 @@
+package com.luis.learnplatform.config.access;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Decides {@link RequiresRole} and {@link SelfOrAdmin} from the authorities and claims of the
+ * current authentication. The rule of each method is resolved from its annotations on the
+ * first call and reused afterwards, and the decisions are shared instances.
+ *
+ * <p>{@link SelfOrAdmin} abstains for tokens without a {@code user_id} claim, leaving the
+ * decision to the service, which can still look the user up by email.
+ */
+public class RoleAuthorizationManager implements AuthorizationManager<MethodInvocation> {
+
+    private static final String ROLE_PREFIX = "ROLE_";
+    private static final String ADMIN = "ROLE_ADMIN";
+    private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+    private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+
+    private final Map<Method, Rule> rules = new ConcurrentHashMap<>();
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+    private final AuthenticationTrustResolver trustResolver = new AuthenticationTrustResolverImpl();
+
+    @Override
+    public AuthorizationDecision authorize(Supplier<Authentication> authentication, MethodInvocation invocation) {
+        Method method = invocation.getMethod();
+        Rule rule = rules.get(method);
+        if (rule == null) {
+            rule = rules.computeIfAbsent(method, this::resolve);
+        }
+        if (rule == Rule.NONE) {
+            return null;
+        }
+        Authentication current = authentication.get();
+        if (current == null || !current.isAuthenticated() || trustResolver.isAnonymous(current)) {
+            return DENIED;
+        }
+        return rule.check(current, invocation.getArguments());
+    }
+
+    /**
+     * @deprecated still abstract in {@link AuthorizationManager}; use {@link #authorize}
+     */
+    @Deprecated
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, MethodInvocation invocation) {
+        return authorize(authentication, invocation);
+    }
+
+    private Rule resolve(Method method) {
+        SelfOrAdmin selfOrAdmin = AnnotatedElementUtils.findMergedAnnotation(method, SelfOrAdmin.class);
+        if (selfOrAdmin != null) {
+            return new SelfOrAdminRule(parameterIndex(method, selfOrAdmin.value()));
+        }
+        RequiresRole requiresRole = AnnotatedElementUtils.findMergedAnnotation(method, RequiresRole.class);
+        if (requiresRole == null) {
+            requiresRole = AnnotatedElementUtils.findMergedAnnotation(method.getDeclaringClass(), RequiresRole.class);
+        }
+        if (requiresRole != null) {
+            return new RoleRule(Arrays.stream(requiresRole.value())
+                    .map(role -> role.startsWith(ROLE_PREFIX) ? role : ROLE_PREFIX + role)
+                    .toArray(String[]::new));
+        }
+        return Rule.NONE;
+    }
+
+    private int parameterIndex(Method method, String name) {
+        String[] names = parameterNameDiscoverer.getParameterNames(method);
+        for (int i = 0; names != null && i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("@SelfOrAdmin on " + method + " names no parameter '" + name + "'");
+    }
+
+    private static boolean hasAnyAuthority(Authentication authentication, String[] authorities) {
+        for (GrantedAuthority granted : authentication.getAuthorities()) {
+            for (String authority : authorities) {
+                if (authority.equals(granted.getAuthority())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private interface Rule {
+
+        Rule NONE = (authentication, arguments) -> null;
+
+        AuthorizationDecision check(Authentication authentication, Object[] arguments);
+    }
+
+    private record RoleRule(String[] authorities) implements Rule {
+
+        @Override
+        public AuthorizationDecision check(Authentication authentication, Object[] arguments) {
+            return hasAnyAuthority(authentication, authorities) ? GRANTED : DENIED;
+        }
+    }
+
+    private record SelfOrAdminRule(int parameterIndex) implements Rule {
+
+        private static final String[] ADMIN_AUTHORITY = {ADMIN};
+
+        @Override
+        public AuthorizationDecision check(Authentication authentication, Object[] arguments) {
+            if (hasAnyAuthority(authentication, ADMIN_AUTHORITY)) {
+                return GRANTED;
+            }
+            if (!(authentication.getPrincipal() instanceof Jwt jwt)) {
+                return DENIED;
+            }
+            if (!(jwt.getClaims().get("user_id") instanceof Number userId)) {
+                return null;
+            }
+            Object argument = arguments[parameterIndex];
+            if (argument instanceof Collection<?> ids) {
+                for (Object id : ids) {
+                    if (!isUser(id, userId)) {
+                        return DENIED;
+                    }
+                }
+                return GRANTED;
+            }
+            return isUser(argument, userId) ? GRANTED : DENIED;
+        }
+
+        private static boolean isUser(Object id, Number userId) {
+            return id instanceof Number number && number.longValue() == userId.longValue();
+        }
+    }
+}
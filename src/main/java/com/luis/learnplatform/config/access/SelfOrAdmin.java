@@ -0,0 +1,17 @@
+package com.luis.learnplatform.config.access;
+
+import java.lang.annotation.*;
+
+/**
+ * Allows the call for admins and for the user whose id is passed in the parameter named
+ * {@link #value()}, the same rule as {@code UserService.validateSelfOrAdmin}. When the parameter
+ * is a collection of ids, every id in it must be the user's. The user id is read from the
+ * {@code user_id} claim of the access token.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface SelfOrAdmin {
+
+    String value() default "id";
+}
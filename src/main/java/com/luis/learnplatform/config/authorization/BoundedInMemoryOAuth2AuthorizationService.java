@@ -0,0 +1,163 @@
+package com.luis.learnplatform.config.authorization;
+
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.endpoint.OidcParameterNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.util.Assert;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Memory-only authorization store holding at most {@code maxSize} authorizations. When full,
+ * the oldest authorization is evicted to make room for a new one.
+ */
+public class BoundedInMemoryOAuth2AuthorizationService implements ExpiringOAuth2AuthorizationService {
+
+    private static final List<Class<? extends OAuth2Token>> TOKEN_TYPES =
+            List.of(OAuth2AuthorizationCode.class, OAuth2AccessToken.class, OAuth2RefreshToken.class, OidcIdToken.class);
+
+    private final int maxSize;
+    private final LinkedHashMap<String, OAuth2Authorization> authorizations = new LinkedHashMap<>();
+    private final Map<String, String> authorizationIdsByToken = new HashMap<>();
+
+    public BoundedInMemoryOAuth2AuthorizationService(int maxSize) {
+        Assert.isTrue(maxSize > 0, "maxSize must be greater than 0");
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public synchronized void save(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        OAuth2Authorization previous = authorizations.put(authorization.getId(), authorization);
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(authorization);
+
+        Iterator<OAuth2Authorization> oldest = authorizations.values().iterator();
+        while (authorizations.size() > maxSize) {
+            unindex(oldest.next());
+            oldest.remove();
+        }
+    }
+
+    @Override
+    public synchronized void remove(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        OAuth2Authorization removed = authorizations.remove(authorization.getId());
+        if (removed != null) {
+            unindex(removed);
+        }
+    }
+
+    @Override
+    public synchronized OAuth2Authorization findById(String id) {
+        Assert.hasText(id, "id cannot be empty");
+        return authorizations.get(id);
+    }
+
+    @Override
+    public synchronized OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        Assert.hasText(token, "token cannot be empty");
+        String id = authorizationIdsByToken.get(token);
+        OAuth2Authorization authorization = id != null ? authorizations.get(id) : null;
+        if (authorization == null || !hasToken(authorization, token, tokenType)) {
+            return null;
+        }
+        return authorization;
+    }
+
+    @Override
+    public synchronized int removeExpired(Instant now, int batchSize) {
+        int removed = 0;
+        Iterator<OAuth2Authorization> iterator = authorizations.values().iterator();
+        while (iterator.hasNext() && removed < batchSize) {
+            OAuth2Authorization authorization = iterator.next();
+            if (isExpired(authorization, now)) {
+                unindex(authorization);
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public synchronized int size() {
+        return authorizations.size();
+    }
+
+    private void index(OAuth2Authorization authorization) {
+        for (String tokenValue : tokenValues(authorization)) {
+            authorizationIdsByToken.put(tokenValue, authorization.getId());
+        }
+    }
+
+    private void unindex(OAuth2Authorization authorization) {
+        for (String tokenValue : tokenValues(authorization)) {
+            authorizationIdsByToken.remove(tokenValue, authorization.getId());
+        }
+    }
+
+    private static List<String> tokenValues(OAuth2Authorization authorization) {
+        List<String> values = new ArrayList<>();
+        String state = authorization.getAttribute(OAuth2ParameterNames.STATE);
+        if (state != null) {
+            values.add(state);
+        }
+        for (Class<? extends OAuth2Token> tokenType : TOKEN_TYPES) {
+            OAuth2Authorization.Token<? extends OAuth2Token> token = authorization.getToken(tokenType);
+            if (token != null) {
+                values.add(token.getToken().getTokenValue());
+            }
+        }
+        return values;
+    }
+
+    private static boolean hasToken(OAuth2Authorization authorization, String token, OAuth2TokenType tokenType) {
+        if (tokenType == null) {
+            return tokenValues(authorization).contains(token);
+        }
+        if (OAuth2ParameterNames.STATE.equals(tokenType.getValue())) {
+            return token.equals(authorization.getAttribute(OAuth2ParameterNames.STATE));
+        }
+        if (OAuth2ParameterNames.CODE.equals(tokenType.getValue())) {
+            return matches(authorization.getToken(OAuth2AuthorizationCode.class), token);
+        }
+        if (OAuth2TokenType.ACCESS_TOKEN.equals(tokenType)) {
+            return matches(authorization.getToken(OAuth2AccessToken.class), token);
+        }
+        if (OAuth2TokenType.REFRESH_TOKEN.equals(tokenType)) {
+            return matches(authorization.getToken(OAuth2RefreshToken.class), token);
+        }
+        if (OidcParameterNames.ID_TOKEN.equals(tokenType.getValue())) {
+            return matches(authorization.getToken(OidcIdToken.class), token);
+        }
+        return false;
+    }
+
+    private static boolean matches(OAuth2Authorization.Token<? extends OAuth2Token> authorizationToken, String token) {
+        return authorizationToken != null && authorizationToken.getToken().getTokenValue().equals(token);
+    }
+
+    private static boolean isExpired(OAuth2Authorization authorization, Instant now) {
+        boolean hasTokens = false;
+        for (Class<? extends OAuth2Token> tokenType : TOKEN_TYPES) {
+            OAuth2Authorization.Token<? extends OAuth2Token> token = authorization.getToken(tokenType);
+            if (token != null) {
+                Instant expiresAt = token.getToken().getExpiresAt();
+                if (expiresAt == null || !expiresAt.isBefore(now)) {
+                    return false;
+                }
+                hasTokens = true;
+            }
+        }
+        return hasTokens;
+    }
+}
@@ -0,0 +1,43 @@
+package com.luis.learnplatform.config.authorization;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+@Component
+public class ExpiredAuthorizationSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpiredAuthorizationSweeper.class);
+
+    @Value("${security.authorization-store.sweep-batch-size}")
+    private Integer batchSize;
+
+    @Autowired
+    private OAuth2AuthorizationService authorizationService;
+
+    @Scheduled(fixedDelayString = "${security.authorization-store.sweep-interval}",
+            initialDelayString = "${security.authorization-store.sweep-interval}")
+    public void sweep() {
+        if (!(authorizationService instanceof ExpiringOAuth2AuthorizationService expiringAuthorizationService)) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        int total = 0;
+        int removed;
+        do {
+            removed = expiringAuthorizationService.removeExpired(now, batchSize);
+            total += removed;
+        } while (removed == batchSize);
+
+        if (total > 0) {
+            logger.debug("Removed {} expired authorizations", total);
+        }
+    }
+}
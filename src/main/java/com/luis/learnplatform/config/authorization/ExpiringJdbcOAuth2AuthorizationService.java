@@ -0,0 +1,31 @@
+package com.luis.learnplatform.config.authorization;
+
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+public class ExpiringJdbcOAuth2AuthorizationService extends JdbcOAuth2AuthorizationService
+        implements ExpiringOAuth2AuthorizationService {
+
+    // @formatter:off
+    private static final String REMOVE_EXPIRED_SQL = "DELETE FROM oauth2_authorization WHERE id IN ("
+            + "SELECT id FROM oauth2_authorization"
+            + " WHERE access_token_expires_at < ?"
+            + " AND (refresh_token_expires_at IS NULL OR refresh_token_expires_at < ?)"
+            + " FETCH FIRST ? ROWS ONLY)";
+    // @formatter:on
+
+    public ExpiringJdbcOAuth2AuthorizationService(JdbcOperations jdbcOperations,
+                                                  RegisteredClientRepository registeredClientRepository) {
+        super(jdbcOperations, registeredClientRepository);
+    }
+
+    @Override
+    public int removeExpired(Instant now, int batchSize) {
+        Timestamp timestamp = Timestamp.from(now);
+        return getJdbcOperations().update(REMOVE_EXPIRED_SQL, timestamp, timestamp, batchSize);
+    }
+}
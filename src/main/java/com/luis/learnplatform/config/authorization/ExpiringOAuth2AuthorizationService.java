@@ -0,0 +1,15 @@
+package com.luis.learnplatform.config.authorization;
+
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+
+import java.time.Instant;
+
+public interface ExpiringOAuth2AuthorizationService extends OAuth2AuthorizationService {
+
+    /**
+     * Removes at most {@code batchSize} authorizations whose tokens have all expired at {@code now}.
+     *
+     * @return the number of authorizations removed
+     */
+    int removeExpired(Instant now, int batchSize);
+}
@@ -0,0 +1,79 @@
+package com.luis.learnplatform.config.customgrant;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Password encoder used for client authentication. A secret that was verified once is
+ * remembered for a short time, so repeated logins from the same client skip the hash
+ * check. Failed checks are never cached.
+ */
+public class CachingClientSecretPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final Cache<String, Boolean> verifiedSecrets;
+    private final byte[] keySalt = new byte[32];
+
+    public CachingClientSecretPasswordEncoder(PasswordEncoder delegate, long maximumSize, Duration timeToLive) {
+        Assert.notNull(delegate, "PasswordEncoder cannot be null");
+        Assert.isTrue(maximumSize > 0, "maximumSize must be greater than 0");
+        Assert.notNull(timeToLive, "timeToLive cannot be null");
+        this.delegate = delegate;
+        this.verifiedSecrets = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .build();
+        new SecureRandom().nextBytes(keySalt);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return delegate.matches(rawPassword, encodedPassword);
+        }
+
+        String key = cacheKey(rawPassword, encodedPassword);
+        if (verifiedSecrets.getIfPresent(key) != null) {
+            return true;
+        }
+
+        boolean matches = delegate.matches(rawPassword, encodedPassword);
+        if (matches) {
+            verifiedSecrets.put(key, Boolean.TRUE);
+        }
+        return matches;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    // The stored hash is part of the key, so rotating a client's secret never hits an old entry.
+    private String cacheKey(CharSequence rawPassword, String encodedPassword) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(keySalt);
+            digest.update(encodedPassword.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(rawPassword.toString().getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,13 +1,14 @@
 package com.luis.learnplatform.config.customgrant;
 
+import com.luis.learnplatform.entities.User;
 import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.core.*;
 import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
 import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
@@ -19,10 +20,10 @@ import org.springframework.security.oauth2.server.authorization.context.Authoriz
 import org.springframework.security.oauth2.server.authorization.token.DefaultOAuth2TokenContext;
 import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenContext;
 import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
 import org.springframework.util.Assert;
 
 import java.security.Principal;
-import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -32,23 +33,22 @@ public class CustomPasswordAuthenticationProvider implements AuthenticationProvi
     private final OAuth2AuthorizationService authorizationService;
     private final UserDetailsService userDetailsService;
     private final OAuth2TokenGenerator<? extends OAuth2Token> tokenGenerator;
-    private final PasswordEncoder passwordEncoder;
-    private String username = "";
-    private String password = "";
-    private Set<String> authorizedScopes = new HashSet<>();
+    private final PasswordVerifier passwordVerifier;
+    private LoginAttemptThrottle loginAttemptThrottle;
+    private PasswordUpgrader passwordUpgrader;
 
     public CustomPasswordAuthenticationProvider(OAuth2AuthorizationService authorizationService,
                                                 OAuth2TokenGenerator<? extends OAuth2Token> tokenGenerator,
-                                                UserDetailsService userDetailsService, PasswordEncoder passwordEncoder) {
+                                                UserDetailsService userDetailsService, PasswordVerifier passwordVerifier) {
 
         Assert.notNull(authorizationService, "authorizationService cannot be null");
         Assert.notNull(tokenGenerator, "TokenGenerator cannot be null");
         Assert.notNull(userDetailsService, "UserDetailsService cannot be null");
-        Assert.notNull(passwordEncoder, "PasswordEncoder cannot be null");
+        Assert.notNull(passwordVerifier, "PasswordVerifier cannot be null");
         this.authorizationService = authorizationService;
         this.tokenGenerator = tokenGenerator;
         this.userDetailsService = userDetailsService;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordVerifier = passwordVerifier;
     }
 
     @Override
@@ -57,33 +57,42 @@ public class CustomPasswordAuthenticationProvider implements AuthenticationProvi
         CustomPasswordAuthenticationToken customPasswordAuthenticationToken = (CustomPasswordAuthenticationToken) authentication;
         OAuth2ClientAuthenticationToken clientPrincipal = getAuthenticatedClientElseThrowInvalidClient(customPasswordAuthenticationToken);
         RegisteredClient registeredClient = clientPrincipal.getRegisteredClient();
-        username = customPasswordAuthenticationToken.getUsername();
-        password = customPasswordAuthenticationToken.getPassword();
+        String username = customPasswordAuthenticationToken.getUsername();
+        String password = customPasswordAuthenticationToken.getPassword();
+        String source = customPasswordAuthenticationToken.getDetails() instanceof WebAuthenticationDetails details
+                ? details.getRemoteAddress() : null;
+
+        if (loginAttemptThrottle != null) {
+            loginAttemptThrottle.checkAllowed(username, source);
+        }
 
         UserDetails user = null;
         try {
             user = userDetailsService.loadUserByUsername(username);
         } catch (UsernameNotFoundException e) {
-            throw new OAuth2AuthenticationException("Invalid credentials");
+            passwordVerifier.matchesUnknownUser(password);
+            throw invalidCredentials(username, source);
         }
 
-        if (!passwordEncoder.matches(password, user.getPassword()) || !user.getUsername().equals(username)) {
-            throw new OAuth2AuthenticationException("Invalid credentials");
+        if (!passwordVerifier.matches(password, user.getPassword()) || !user.getUsername().equals(username)) {
+            throw invalidCredentials(username, source);
+        }
+        if (loginAttemptThrottle != null) {
+            loginAttemptThrottle.recordSuccess(username);
+        }
+        if (passwordUpgrader != null) {
+            passwordUpgrader.upgradeIfNeeded(user, password);
         }
 
-        authorizedScopes = user.getAuthorities().stream()
+        Set<String> authorizedScopes = user.getAuthorities().stream()
                 .map(scope -> scope.getAuthority())
                 .filter(scope -> registeredClient.getScopes().contains(scope))
                 .collect(Collectors.toSet());
 
-        //-----------Create a new Security Context Holder Context----------
-        OAuth2ClientAuthenticationToken oAuth2ClientAuthenticationToken = (OAuth2ClientAuthenticationToken) SecurityContextHolder.getContext().getAuthentication();
-        CustomUserAuthorities customPasswordUser = new CustomUserAuthorities(username, user.getAuthorities());
-        oAuth2ClientAuthenticationToken.setDetails(customPasswordUser);
-
-        var newcontext = SecurityContextHolder.createEmptyContext();
-        newcontext.setAuthentication(oAuth2ClientAuthenticationToken);
-        SecurityContextHolder.setContext(newcontext);
+        //-----------Attach the user to this request's client principal----------
+        Long userId = user instanceof User ? ((User) user).getId() : null;
+        CustomUserAuthorities customPasswordUser = new CustomUserAuthorities(userId, username, user.getAuthorities());
+        clientPrincipal.setDetails(customPasswordUser);
 
         //-----------TOKEN BUILDERS----------
         DefaultOAuth2TokenContext.Builder tokenContextBuilder = DefaultOAuth2TokenContext.builder()
@@ -94,9 +103,13 @@ public class CustomPasswordAuthenticationProvider implements AuthenticationProvi
                 .authorizationGrantType(new AuthorizationGrantType("password"))
                 .authorizationGrant(customPasswordAuthenticationToken);
 
+        // Stored with the authorization, so it must stay serializable by the JDBC store
+        Authentication userPrincipal = UsernamePasswordAuthenticationToken.authenticated(username, null,
+                user.getAuthorities().stream().map(x -> new SimpleGrantedAuthority(x.getAuthority())).toList());
+
         OAuth2Authorization.Builder authorizationBuilder = OAuth2Authorization.withRegisteredClient(registeredClient)
-                .attribute(Principal.class.getName(), clientPrincipal)
-                .principalName(clientPrincipal.getName())
+                .attribute(Principal.class.getName(), userPrincipal)
+                .principalName(username)
                 .authorizationGrantType(new AuthorizationGrantType("password"))
                 .authorizedScopes(authorizedScopes);
 
@@ -119,10 +132,39 @@ public class CustomPasswordAuthenticationProvider implements AuthenticationProvi
             authorizationBuilder.accessToken(accessToken);
         }
 
+        //-----------REFRESH TOKEN----------
+        OAuth2RefreshToken refreshToken = null;
+        if (registeredClient.getAuthorizationGrantTypes().contains(AuthorizationGrantType.REFRESH_TOKEN)) {
+            tokenContext = tokenContextBuilder.tokenType(OAuth2TokenType.REFRESH_TOKEN).build();
+            OAuth2Token generatedRefreshToken = this.tokenGenerator.generate(tokenContext);
+            if (!(generatedRefreshToken instanceof OAuth2RefreshToken)) {
+                OAuth2Error error = new OAuth2Error(OAuth2ErrorCodes.SERVER_ERROR,
+                        "The token generator failed to generate the refresh token.", ERROR_URI);
+                throw new OAuth2AuthenticationException(error);
+            }
+            refreshToken = (OAuth2RefreshToken) generatedRefreshToken;
+            authorizationBuilder.refreshToken(refreshToken);
+        }
+
         OAuth2Authorization authorization = authorizationBuilder.build();
         this.authorizationService.save(authorization);
 
-        return new OAuth2AccessTokenAuthenticationToken(registeredClient, clientPrincipal, accessToken);
+        return new OAuth2AccessTokenAuthenticationToken(registeredClient, clientPrincipal, accessToken, refreshToken);
+    }
+
+    /**
+     * Sets the throttle consulted before any user lookup or hash check; {@code null} disables throttling.
+     */
+    public void setLoginAttemptThrottle(LoginAttemptThrottle loginAttemptThrottle) {
+        this.loginAttemptThrottle = loginAttemptThrottle;
+    }
+
+    /**
+     * Sets the upgrader that re-hashes outdated stored passwords after a successful login;
+     * {@code null} leaves stored hashes as they are.
+     */
+    public void setPasswordUpgrader(PasswordUpgrader passwordUpgrader) {
+        this.passwordUpgrader = passwordUpgrader;
     }
 
     @Override
@@ -130,6 +172,13 @@ public class CustomPasswordAuthenticationProvider implements AuthenticationProvi
         return CustomPasswordAuthenticationToken.class.isAssignableFrom(authentication);
     }
 
+    private OAuth2AuthenticationException invalidCredentials(String username, String source) {
+        if (loginAttemptThrottle != null) {
+            loginAttemptThrottle.recordFailure(username, source);
+        }
+        return new OAuth2AuthenticationException("Invalid credentials");
+    }
+
     private static OAuth2ClientAuthenticationToken getAuthenticatedClientElseThrowInvalidClient(Authentication authentication) {
 
         OAuth2ClientAuthenticationToken clientPrincipal = null;
@@ -0,0 +1,178 @@
+package com.luis.learnplatform.config.customgrant;
+
+import com.luis.learnplatform.entities.User;
+import com.luis.learnplatform.services.TokenRevocationService;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.oauth2.core.*;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AccessTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2RefreshTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContextHolder;
+import org.springframework.security.oauth2.server.authorization.token.DefaultOAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+import org.springframework.util.Assert;
+
+import java.security.Principal;
+import java.util.Set;
+
+/**
+ * Refresh token grant for authorizations issued by the password grant. The user is reloaded
+ * (no password check) so the new access token carries current authorities, and the refresh
+ * token is replaced on every use so a used token cannot be presented again.
+ */
+public class CustomRefreshTokenAuthenticationProvider implements AuthenticationProvider {
+
+    private static final String ERROR_URI = "https://datatracker.ietf.org/doc/html/rfc6749#section-5.2";
+    private final OAuth2AuthorizationService authorizationService;
+    private final UserDetailsService userDetailsService;
+    private final OAuth2TokenGenerator<? extends OAuth2Token> tokenGenerator;
+    private TokenRevocationService tokenRevocationService;
+
+    public CustomRefreshTokenAuthenticationProvider(OAuth2AuthorizationService authorizationService,
+                                                    OAuth2TokenGenerator<? extends OAuth2Token> tokenGenerator,
+                                                    UserDetailsService userDetailsService) {
+
+        Assert.notNull(authorizationService, "authorizationService cannot be null");
+        Assert.notNull(tokenGenerator, "TokenGenerator cannot be null");
+        Assert.notNull(userDetailsService, "UserDetailsService cannot be null");
+        this.authorizationService = authorizationService;
+        this.tokenGenerator = tokenGenerator;
+        this.userDetailsService = userDetailsService;
+    }
+
+    /**
+     * Rejects refresh tokens of users revoked after the token was issued; {@code null} disables the check.
+     */
+    public void setTokenRevocationService(TokenRevocationService tokenRevocationService) {
+        this.tokenRevocationService = tokenRevocationService;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+
+        OAuth2RefreshTokenAuthenticationToken refreshTokenAuthentication = (OAuth2RefreshTokenAuthenticationToken) authentication;
+        OAuth2ClientAuthenticationToken clientPrincipal = getAuthenticatedClientElseThrowInvalidClient(refreshTokenAuthentication);
+        RegisteredClient registeredClient = clientPrincipal.getRegisteredClient();
+
+        OAuth2Authorization authorization = authorizationService.findByToken(
+                refreshTokenAuthentication.getRefreshToken(), OAuth2TokenType.REFRESH_TOKEN);
+        if (authorization == null || !registeredClient.getId().equals(authorization.getRegisteredClientId())) {
+            throw new OAuth2AuthenticationException(OAuth2ErrorCodes.INVALID_GRANT);
+        }
+        if (!registeredClient.getAuthorizationGrantTypes().contains(AuthorizationGrantType.REFRESH_TOKEN)) {
+            throw new OAuth2AuthenticationException(OAuth2ErrorCodes.UNAUTHORIZED_CLIENT);
+        }
+        OAuth2Authorization.Token<OAuth2RefreshToken> refreshToken = authorization.getRefreshToken();
+        if (refreshToken == null || !refreshToken.isActive()) {
+            throw new OAuth2AuthenticationException(OAuth2ErrorCodes.INVALID_GRANT);
+        }
+
+        Set<String> authorizedScopes = authorization.getAuthorizedScopes();
+        Set<String> requestedScopes = refreshTokenAuthentication.getScopes();
+        if (!authorizedScopes.containsAll(requestedScopes)) {
+            throw new OAuth2AuthenticationException(OAuth2ErrorCodes.INVALID_SCOPE);
+        }
+        if (!requestedScopes.isEmpty()) {
+            authorizedScopes = requestedScopes;
+        }
+
+        String username = authorization.getPrincipalName();
+        UserDetails user = null;
+        try {
+            user = userDetailsService.loadUserByUsername(username);
+        } catch (UsernameNotFoundException e) {
+            throw new OAuth2AuthenticationException(OAuth2ErrorCodes.INVALID_GRANT);
+        }
+
+        //-----------Attach the user to this request's client principal----------
+        Long userId = user instanceof User ? ((User) user).getId() : null;
+        if (tokenRevocationService != null
+                && tokenRevocationService.isUserRevokedSince(userId, refreshToken.getToken().getIssuedAt())) {
+            throw new OAuth2AuthenticationException(OAuth2ErrorCodes.INVALID_GRANT);
+        }
+        CustomUserAuthorities customPasswordUser = new CustomUserAuthorities(userId, username, user.getAuthorities());
+        clientPrincipal.setDetails(customPasswordUser);
+
+        // Stored with the authorization, so it must stay serializable by the JDBC store
+        Authentication userPrincipal = UsernamePasswordAuthenticationToken.authenticated(username, null,
+                user.getAuthorities().stream().map(x -> new SimpleGrantedAuthority(x.getAuthority())).toList());
+
+        //-----------TOKEN BUILDERS----------
+        DefaultOAuth2TokenContext.Builder tokenContextBuilder = DefaultOAuth2TokenContext.builder()
+                .registeredClient(registeredClient)
+                .principal(clientPrincipal)
+                .authorizationServerContext(AuthorizationServerContextHolder.getContext())
+                .authorization(authorization)
+                .authorizedScopes(authorizedScopes)
+                .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+                .authorizationGrant(refreshTokenAuthentication);
+
+        OAuth2Authorization.Builder authorizationBuilder = OAuth2Authorization.from(authorization)
+                .attribute(Principal.class.getName(), userPrincipal);
+
+        //-----------ACCESS TOKEN----------
+        OAuth2TokenContext tokenContext = tokenContextBuilder.tokenType(OAuth2TokenType.ACCESS_TOKEN).build();
+        OAuth2Token generatedAccessToken = this.tokenGenerator.generate(tokenContext);
+        if (generatedAccessToken == null) {
+            OAuth2Error error = new OAuth2Error(OAuth2ErrorCodes.SERVER_ERROR,
+                    "The token generator failed to generate the access token.", ERROR_URI);
+            throw new OAuth2AuthenticationException(error);
+        }
+
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER,
+                generatedAccessToken.getTokenValue(), generatedAccessToken.getIssuedAt(),
+                generatedAccessToken.getExpiresAt(), tokenContext.getAuthorizedScopes());
+        if (generatedAccessToken instanceof ClaimAccessor) {
+            authorizationBuilder.token(accessToken, (metadata) ->
+                    metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, ((ClaimAccessor) generatedAccessToken).getClaims()));
+        } else {
+            authorizationBuilder.accessToken(accessToken);
+        }
+
+        //-----------REFRESH TOKEN----------
+        // Replacing the token in the authorization is what invalidates the one just used
+        tokenContext = tokenContextBuilder.tokenType(OAuth2TokenType.REFRESH_TOKEN).build();
+        OAuth2Token generatedRefreshToken = this.tokenGenerator.generate(tokenContext);
+        if (!(generatedRefreshToken instanceof OAuth2RefreshToken)) {
+            OAuth2Error error = new OAuth2Error(OAuth2ErrorCodes.SERVER_ERROR,
+                    "The token generator failed to generate the refresh token.", ERROR_URI);
+            throw new OAuth2AuthenticationException(error);
+        }
+        OAuth2RefreshToken currentRefreshToken = (OAuth2RefreshToken) generatedRefreshToken;
+        authorizationBuilder.refreshToken(currentRefreshToken);
+
+        authorization = authorizationBuilder.build();
+        this.authorizationService.save(authorization);
+
+        return new OAuth2AccessTokenAuthenticationToken(registeredClient, clientPrincipal, accessToken, currentRefreshToken);
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return OAuth2RefreshTokenAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+
+    private static OAuth2ClientAuthenticationToken getAuthenticatedClientElseThrowInvalidClient(Authentication authentication) {
+
+        OAuth2ClientAuthenticationToken clientPrincipal = null;
+        if (OAuth2ClientAuthenticationToken.class.isAssignableFrom(authentication.getPrincipal().getClass())) {
+            clientPrincipal = (OAuth2ClientAuthenticationToken) authentication.getPrincipal();
+        }
+        if (clientPrincipal != null && clientPrincipal.isAuthenticated()) {
+            return clientPrincipal;
+        }
+        throw new OAuth2AuthenticationException(OAuth2ErrorCodes.INVALID_CLIENT);
+    }
+}
@@ -0,0 +1,68 @@
+package com.luis.learnplatform.config.customgrant;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.http.converter.OAuth2ErrorHttpMessageConverter;
+import org.springframework.security.oauth2.server.authorization.web.authentication.OAuth2ErrorAuthenticationFailureHandler;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Token endpoint error handler. Overload and throttling errors are answered with a retryable
+ * status instead of the generic 400 used for every other OAuth2 error.
+ */
+public class CustomTokenErrorResponseHandler implements AuthenticationFailureHandler {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final AuthenticationFailureHandler delegate = new OAuth2ErrorAuthenticationFailureHandler();
+    private final HttpMessageConverter<OAuth2Error> errorResponseConverter = new OAuth2ErrorHttpMessageConverter();
+
+    @Override
+    public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response,
+                                        AuthenticationException exception) throws IOException, ServletException {
+
+        if (exception instanceof OAuth2AuthenticationException oauth2Exception) {
+            OAuth2Error error = oauth2Exception.getError();
+            HttpStatus status = resolveStatus(error.getErrorCode());
+            if (status != null) {
+                ServletServerHttpResponse httpResponse = new ServletServerHttpResponse(response);
+                httpResponse.setStatusCode(status);
+                httpResponse.getHeaders().set(HttpHeaders.RETRY_AFTER, retryAfterSeconds(oauth2Exception));
+                errorResponseConverter.write(error, null, httpResponse);
+                return;
+            }
+        }
+        delegate.onAuthenticationFailure(request, response, exception);
+    }
+
+    private static HttpStatus resolveStatus(String errorCode) {
+        if (OAuth2ErrorCodes.TEMPORARILY_UNAVAILABLE.equals(errorCode)) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        if (TooManyLoginAttemptsException.ERROR_CODE.equals(errorCode)) {
+            return HttpStatus.TOO_MANY_REQUESTS;
+        }
+        return null;
+    }
+
+    private static String retryAfterSeconds(OAuth2AuthenticationException exception) {
+        if (exception instanceof TooManyLoginAttemptsException throttled) {
+            Duration retryAfter = throttled.getRetryAfter();
+            long seconds = retryAfter.getSeconds() + (retryAfter.getNano() > 0 ? 1 : 0);
+            return String.valueOf(Math.max(1, seconds));
+        }
+        return RETRY_AFTER_SECONDS;
+    }
+}
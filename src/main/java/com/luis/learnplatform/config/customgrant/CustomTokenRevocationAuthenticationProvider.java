@@ -0,0 +1,59 @@
+package com.luis.learnplatform.config.customgrant;
+
+import com.luis.learnplatform.services.TokenRevocationService;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2TokenRevocationAuthenticationProvider;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2TokenRevocationAuthenticationToken;
+import org.springframework.util.Assert;
+
+import java.util.Map;
+
+/**
+ * Token revocation endpoint that, besides invalidating the authorization, deny-lists its
+ * access token. Without this a revoked self-contained access token keeps working until it
+ * expires.
+ */
+public class CustomTokenRevocationAuthenticationProvider implements AuthenticationProvider {
+
+    private final OAuth2TokenRevocationAuthenticationProvider delegate;
+    private final OAuth2AuthorizationService authorizationService;
+    private final TokenRevocationService tokenRevocationService;
+
+    public CustomTokenRevocationAuthenticationProvider(OAuth2AuthorizationService authorizationService,
+                                                       TokenRevocationService tokenRevocationService) {
+
+        Assert.notNull(authorizationService, "authorizationService cannot be null");
+        Assert.notNull(tokenRevocationService, "TokenRevocationService cannot be null");
+        this.delegate = new OAuth2TokenRevocationAuthenticationProvider(authorizationService);
+        this.authorizationService = authorizationService;
+        this.tokenRevocationService = tokenRevocationService;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        Authentication result = delegate.authenticate(authentication);
+
+        // Revoking either token of an authorization invalidates its access token
+        String token = ((OAuth2TokenRevocationAuthenticationToken) authentication).getToken();
+        OAuth2Authorization authorization = authorizationService.findByToken(token, null);
+        OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization != null ? authorization.getAccessToken() : null;
+        if (accessToken != null && accessToken.isInvalidated()) {
+            Map<String, Object> claims = accessToken.getClaims();
+            if (claims != null && claims.get(JwtClaimNames.JTI) instanceof String tokenId) {
+                tokenRevocationService.revokeToken(tokenId, accessToken.getToken().getExpiresAt());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return OAuth2TokenRevocationAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+}
@@ -0,0 +1,173 @@
+package com.luis.learnplatform.config.customgrant;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts failed password grants per email and per source address over a sliding window and
+ * turns further attempts away once either limit is reached, before any hashing or query.
+ *
+ * <p>Counters are updated with compare-and-set only; the key map is a Caffeine cache bounded
+ * by {@code maximumKeys}, so a flood of distinct emails cannot exhaust memory.
+ */
+public class LoginAttemptThrottle {
+
+    private static final int SLOTS = 10;
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final int maxFailuresPerEmail;
+    private final int maxFailuresPerSource;
+    private final long slotNanos;
+    private final LongSupplier nanoTime;
+    private final long origin;
+    private final Cache<String, SlidingWindowCounter> counters;
+    private final Counter throttled;
+
+    public LoginAttemptThrottle(int maxFailuresPerEmail, int maxFailuresPerSource, Duration window, long maximumKeys,
+                                MeterRegistry meterRegistry) {
+        this(maxFailuresPerEmail, maxFailuresPerSource, window, maximumKeys, meterRegistry, System::nanoTime);
+    }
+
+    LoginAttemptThrottle(int maxFailuresPerEmail, int maxFailuresPerSource, Duration window, long maximumKeys,
+                         MeterRegistry meterRegistry, LongSupplier nanoTime) {
+
+        Assert.isTrue(maxFailuresPerEmail > 0, "maxFailuresPerEmail must be greater than 0");
+        Assert.isTrue(maxFailuresPerSource > 0, "maxFailuresPerSource must be greater than 0");
+        Assert.isTrue(window != null && window.toNanos() >= SLOTS, "window must be positive");
+        Assert.isTrue(maximumKeys > 0, "maximumKeys must be greater than 0");
+        Assert.notNull(meterRegistry, "MeterRegistry cannot be null");
+        this.maxFailuresPerEmail = maxFailuresPerEmail;
+        this.maxFailuresPerSource = maxFailuresPerSource;
+        this.slotNanos = window.toNanos() / SLOTS;
+        this.nanoTime = nanoTime;
+        this.origin = nanoTime.getAsLong();
+        this.counters = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(window)
+                .ticker(nanoTime::getAsLong)
+                .build();
+        this.throttled = Counter.builder("security.login.throttled")
+                .description("Password grants refused because of too many failed attempts")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @throws TooManyLoginAttemptsException when the email or the source has reached its limit
+     */
+    public void checkAllowed(String email, String source) {
+        long now = elapsedNanos();
+        long retryAfterNanos = Math.max(
+                retryAfterNanos(emailKey(email), maxFailuresPerEmail, now),
+                retryAfterNanos(sourceKey(source), maxFailuresPerSource, now));
+        if (retryAfterNanos > 0) {
+            throttled.increment();
+            throw new TooManyLoginAttemptsException(Duration.ofNanos(retryAfterNanos));
+        }
+    }
+
+    public void recordFailure(String email, String source) {
+        long epoch = elapsedNanos() / slotNanos;
+        for (String key : new String[]{emailKey(email), sourceKey(source)}) {
+            if (key != null) {
+                counters.get(key, x -> new SlidingWindowCounter()).increment(epoch);
+            }
+        }
+    }
+
+    /**
+     * Clears the failures of {@code email} after a successful login; the source keeps its count.
+     */
+    public void recordSuccess(String email) {
+        String key = emailKey(email);
+        if (key != null) {
+            counters.invalidate(key);
+        }
+    }
+
+    private long retryAfterNanos(String key, int limit, long now) {
+        SlidingWindowCounter counter = key != null ? counters.getIfPresent(key) : null;
+        if (counter == null) {
+            return 0;
+        }
+        long epoch = now / slotNanos;
+        if (counter.sum(epoch) < limit) {
+            return 0;
+        }
+        // Allowed again once the oldest slot still counted leaves the window
+        return (counter.oldestEpoch(epoch) + SLOTS) * slotNanos - now;
+    }
+
+    // Relative to construction so that epochs are never negative
+    private long elapsedNanos() {
+        return nanoTime.getAsLong() - origin;
+    }
+
+    private static String emailKey(String email) {
+        return email != null ? "email:" + email.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static String sourceKey(String source) {
+        return source != null ? "source:" + source : null;
+    }
+
+    /**
+     * Ring of {@link #SLOTS} counters, each packing the slot epoch in the high bits and its
+     * count in the low {@link #COUNT_BITS} bits, so that a slot is reused with a single CAS.
+     */
+    private static class SlidingWindowCounter {
+
+        private final AtomicLongArray slots = new AtomicLongArray(SLOTS);
+
+        void increment(long epoch) {
+            int index = (int) (epoch % SLOTS);
+            long current;
+            long next;
+            do {
+                current = slots.get(index);
+                if (current >>> COUNT_BITS != epoch) {
+                    next = (epoch << COUNT_BITS) | 1;
+                } else if ((current & COUNT_MASK) == COUNT_MASK) {
+                    return;
+                } else {
+                    next = current + 1;
+                }
+            } while (!slots.compareAndSet(index, current, next));
+        }
+
+        long sum(long epoch) {
+            long sum = 0;
+            for (int i = 0; i < SLOTS; i++) {
+                long slot = slots.get(i);
+                if (isInWindow(slot >>> COUNT_BITS, epoch)) {
+                    sum += slot & COUNT_MASK;
+                }
+            }
+            return sum;
+        }
+
+        long oldestEpoch(long epoch) {
+            long oldest = epoch;
+            for (int i = 0; i < SLOTS; i++) {
+                long slot = slots.get(i);
+                long slotEpoch = slot >>> COUNT_BITS;
+                if ((slot & COUNT_MASK) > 0 && isInWindow(slotEpoch, epoch)) {
+                    oldest = Math.min(oldest, slotEpoch);
+                }
+            }
+            return oldest;
+        }
+
+        private static boolean isInWindow(long slotEpoch, long epoch) {
+            return slotEpoch <= epoch && slotEpoch > epoch - SLOTS;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.luis.learnplatform.config.customgrant;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-hashes a password with the current encoder settings after a successful login, on a
+ * single background thread so the login response does not wait for the extra hash.
+ * Upgrades that do not fit in the queue are dropped; they are retried on the next login.
+ */
+public class PasswordUpgrader {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordUpgrader.class);
+
+    private final PasswordEncoder passwordEncoder;
+    private final UserDetailsPasswordService userDetailsPasswordService;
+    private final ThreadPoolExecutor executor;
+    private final Counter upgrades;
+    private final Counter dropped;
+    private final Counter failures;
+
+    public PasswordUpgrader(PasswordEncoder passwordEncoder, UserDetailsPasswordService userDetailsPasswordService,
+                            int queueCapacity, MeterRegistry meterRegistry) {
+
+        Assert.notNull(passwordEncoder, "PasswordEncoder cannot be null");
+        Assert.notNull(userDetailsPasswordService, "UserDetailsPasswordService cannot be null");
+        Assert.isTrue(queueCapacity > 0, "queueCapacity must be greater than 0");
+        Assert.notNull(meterRegistry, "MeterRegistry cannot be null");
+        this.passwordEncoder = passwordEncoder;
+        this.userDetailsPasswordService = userDetailsPasswordService;
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-upgrader-"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.upgrades = Counter.builder("security.password.upgrades")
+                .description("Stored password hashes re-encoded with the current cost")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("security.password.upgrades.dropped")
+                .description("Password upgrades skipped because the upgrade queue was full")
+                .register(meterRegistry);
+        this.failures = Counter.builder("security.password.upgrades.failures")
+                .description("Password upgrades that failed while saving the new hash")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Schedules a re-hash of {@code rawPassword} when the stored hash of {@code user} is outdated.
+     * Must only be called once the password has been verified.
+     */
+    public void upgradeIfNeeded(UserDetails user, String rawPassword) {
+        if (!passwordEncoder.upgradeEncoding(user.getPassword())) {
+            return;
+        }
+        try {
+            executor.execute(() -> upgrade(user, rawPassword));
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void upgrade(UserDetails user, String rawPassword) {
+        try {
+            userDetailsPasswordService.updatePassword(user, passwordEncoder.encode(rawPassword));
+            upgrades.increment();
+        } catch (RuntimeException e) {
+            failures.increment();
+            logger.warn("Could not upgrade the password hash of {}", user.getUsername(), e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.luis.learnplatform.config.customgrant;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Runs password hash checks on a dedicated, size-bounded pool so that login bursts
+ * cannot occupy every request thread. When the queue is full the request is rejected
+ * straight away with {@code temporarily_unavailable} instead of waiting.
+ */
+public class PasswordVerifier {
+
+    private static final String EXECUTOR_NAME = "password-verifier";
+
+    private final PasswordEncoder passwordEncoder;
+    private final String unknownUserPassword;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+    private final Counter rejections;
+    private final Counter timeouts;
+
+    public PasswordVerifier(PasswordEncoder passwordEncoder, int poolSize, int queueCapacity, Duration timeout,
+                            MeterRegistry meterRegistry) {
+        this(passwordEncoder, passwordEncoder.encode(UUID.randomUUID().toString()), poolSize, queueCapacity, timeout,
+                meterRegistry);
+    }
+
+    /**
+     * @param unknownUserPassword hash checked for unknown emails; it should cost as much to check
+     * as the hashes of registered users
+     */
+    public PasswordVerifier(PasswordEncoder passwordEncoder, String unknownUserPassword, int poolSize,
+                            int queueCapacity, Duration timeout, MeterRegistry meterRegistry) {
+
+        Assert.notNull(passwordEncoder, "PasswordEncoder cannot be null");
+        Assert.hasText(unknownUserPassword, "unknownUserPassword cannot be empty");
+        Assert.isTrue(poolSize > 0, "poolSize must be greater than 0");
+        Assert.isTrue(queueCapacity > 0, "queueCapacity must be greater than 0");
+        Assert.notNull(timeout, "timeout cannot be null");
+        Assert.notNull(meterRegistry, "MeterRegistry cannot be null");
+        this.passwordEncoder = passwordEncoder;
+        this.unknownUserPassword = unknownUserPassword;
+        this.timeout = timeout;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory(EXECUTOR_NAME + "-"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        new ExecutorServiceMetrics(executor, EXECUTOR_NAME, Tags.empty()).bindTo(meterRegistry);
+        this.rejections = Counter.builder("security.password.verifier.rejections")
+                .description("Password checks rejected because the verification queue was full")
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("security.password.verifier.timeouts")
+                .description("Password checks abandoned after waiting longer than the configured timeout")
+                .register(meterRegistry);
+    }
+
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        Future<Boolean> result;
+        try {
+            result = executor.submit(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            throw temporarilyUnavailable();
+        }
+
+        try {
+            return result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            timeouts.increment();
+            throw temporarilyUnavailable();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw temporarilyUnavailable();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password verification failed", e.getCause());
+        }
+    }
+
+    /**
+     * Does the same work as {@link #matches} against a hash no password matches, so a login
+     * for an unknown email takes as long as one for a registered email.
+     */
+    public boolean matchesUnknownUser(CharSequence rawPassword) {
+        matches(rawPassword, unknownUserPassword);
+        return false;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static OAuth2AuthenticationException temporarilyUnavailable() {
+        OAuth2Error error = new OAuth2Error(OAuth2ErrorCodes.TEMPORARILY_UNAVAILABLE,
+                "Too many concurrent login attempts, please retry shortly.", null);
+        return new OAuth2AuthenticationException(error);
+    }
+}
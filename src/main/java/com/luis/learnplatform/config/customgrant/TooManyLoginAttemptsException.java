@@ -0,0 +1,22 @@
+package com.luis.learnplatform.config.customgrant;
+
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+
+import java.time.Duration;
+
+public class TooManyLoginAttemptsException extends OAuth2AuthenticationException {
+
+    public static final String ERROR_CODE = "too_many_attempts";
+
+    private final Duration retryAfter;
+
+    public TooManyLoginAttemptsException(Duration retryAfter) {
+        super(new OAuth2Error(ERROR_CODE, "Too many failed login attempts, please retry later.", null));
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,126 @@
+package com.luis.learnplatform.config.jwk;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.util.Assert;
+
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Signing keys kept in the {@code oauth2_jwk} table so that every node signs and verifies
+ * with the same keys, and restarts reuse them instead of generating a new one.
+ *
+ * <p>A new key is generated once the newest key is older than the rotation interval. It is
+ * published right away but only used for signing after the activation delay, which gives
+ * the other nodes time to load it. Retired keys remain available for verification until
+ * every token they signed has expired, including keys of a previously configured algorithm.
+ */
+public class JdbcJwkSource implements JWKSource<SecurityContext> {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcJwkSource.class);
+
+    private static final String SELECT_SQL = "SELECT jwk, created_at FROM oauth2_jwk ORDER BY created_at DESC";
+    private static final String INSERT_SQL = "INSERT INTO oauth2_jwk (id, jwk, created_at) VALUES (?, ?, ?)";
+    private static final String DELETE_SQL = "DELETE FROM oauth2_jwk WHERE created_at < ? AND id <> ?";
+
+    private final JdbcOperations jdbcOperations;
+    private final SignatureAlgorithm signatureAlgorithm;
+    private final Duration rotationInterval;
+    private final Duration activationDelay;
+    private final Duration retention;
+
+    private volatile JWKSet jwkSet;
+    private volatile JWKSet signingJwkSet;
+
+    public JdbcJwkSource(JdbcOperations jdbcOperations, SignatureAlgorithm signatureAlgorithm,
+                         Duration rotationInterval, Duration activationDelay, Duration retention) {
+
+        Assert.notNull(jdbcOperations, "JdbcOperations cannot be null");
+        Assert.notNull(signatureAlgorithm, "signatureAlgorithm cannot be null");
+        Assert.notNull(rotationInterval, "rotationInterval cannot be null");
+        Assert.notNull(activationDelay, "activationDelay cannot be null");
+        Assert.notNull(retention, "retention cannot be null");
+        this.jdbcOperations = jdbcOperations;
+        this.signatureAlgorithm = signatureAlgorithm;
+        this.rotationInterval = rotationInterval;
+        this.activationDelay = activationDelay;
+        this.retention = retention;
+        refresh();
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        return jwkSelector.select(jwkSet);
+    }
+
+    /**
+     * Source for the token encoder, exposing only the key currently used for signing.
+     */
+    public JWKSource<SecurityContext> signingKeySource() {
+        return (jwkSelector, context) -> jwkSelector.select(signingJwkSet);
+    }
+
+    @Scheduled(fixedDelayString = "${security.jwt.key-refresh-interval}",
+            initialDelayString = "${security.jwt.key-refresh-interval}")
+    public synchronized void refresh() {
+        // Truncated so that the created_at stored for a new key never rounds up past now
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        List<StoredKey> keys = load();
+        List<StoredKey> signingKeys = signingKeys(keys);
+        if (signingKeys.isEmpty() || signingKeys.get(0).createdAt().isBefore(now.minus(rotationInterval))) {
+            JWK key = Jwks.generate(signatureAlgorithm);
+            jdbcOperations.update(INSERT_SQL, key.getKeyID(), key.toJSONString(), Timestamp.from(now));
+            logger.info("Generated {} signing key {}", signatureAlgorithm.getName(), key.getKeyID());
+            keys = load();
+            signingKeys = signingKeys(keys);
+        }
+
+        StoredKey signingKey = signingKeys.stream()
+                .filter(x -> !x.createdAt().isAfter(now.minus(activationDelay)))
+                .findFirst()
+                .orElse(signingKeys.get(0));
+
+        // A key stops signing at most rotationInterval + 2 * activationDelay after its creation
+        Instant expired = now.minus(rotationInterval).minus(activationDelay.multipliedBy(2)).minus(retention);
+        jdbcOperations.update(DELETE_SQL, Timestamp.from(expired), signingKey.jwk().getKeyID());
+
+        jwkSet = new JWKSet(keys.stream()
+                .filter(x -> !x.createdAt().isBefore(expired) || x == signingKey)
+                .map(StoredKey::jwk)
+                .toList());
+        signingJwkSet = new JWKSet(signingKey.jwk());
+    }
+
+    private List<StoredKey> signingKeys(List<StoredKey> keys) {
+        return keys.stream().filter(x -> Jwks.isSigningKeyFor(x.jwk(), signatureAlgorithm)).toList();
+    }
+
+    private List<StoredKey> load() {
+        return jdbcOperations.query(SELECT_SQL, (rs, rowNum) ->
+                new StoredKey(parse(rs.getString("jwk")), rs.getTimestamp("created_at").toInstant()));
+    }
+
+    private static JWK parse(String json) {
+        try {
+            return JWK.parse(json);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Invalid key in oauth2_jwk", e);
+        }
+    }
+
+    private record StoredKey(JWK jwk, Instant createdAt) {
+    }
+}
@@ -0,0 +1,88 @@
+package com.luis.learnplatform.config.jwk;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.UUID;
+
+public final class Jwks {
+
+    private Jwks() {
+    }
+
+    public static JWK generate(SignatureAlgorithm algorithm) {
+        return switch (algorithm) {
+            case RS256, RS384, RS512, PS256, PS384, PS512 -> generateRsa(algorithm);
+            case ES256 -> generateEc(algorithm, Curve.P_256);
+            case ES384 -> generateEc(algorithm, Curve.P_384);
+            case ES512 -> generateEc(algorithm, Curve.P_521);
+        };
+    }
+
+    /**
+     * Whether {@code jwk} can sign with {@code algorithm}. Keys stored before the algorithm
+     * became configurable carry no {@code alg} and are RS256 keys.
+     */
+    public static boolean isSigningKeyFor(JWK jwk, SignatureAlgorithm algorithm) {
+        if (jwk.getAlgorithm() == null) {
+            return algorithm == SignatureAlgorithm.RS256 && jwk instanceof RSAKey;
+        }
+        return jwk.getAlgorithm().getName().equals(algorithm.getName());
+    }
+
+    private static RSAKey generateRsa(SignatureAlgorithm algorithm) {
+        KeyPair keyPair = generateKeyPair("RSA", null);
+        RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+        RSAPrivateKey privateKey = (RSAPrivateKey) keyPair.getPrivate();
+        // @formatter:off
+        return new RSAKey.Builder(publicKey)
+                .privateKey(privateKey)
+                .keyUse(KeyUse.SIGNATURE)
+                .algorithm(JWSAlgorithm.parse(algorithm.getName()))
+                .keyID(UUID.randomUUID().toString())
+                .build();
+        // @formatter:on
+    }
+
+    private static ECKey generateEc(SignatureAlgorithm algorithm, Curve curve) {
+        KeyPair keyPair = generateKeyPair("EC", new ECGenParameterSpec(curve.getStdName()));
+        ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+        ECPrivateKey privateKey = (ECPrivateKey) keyPair.getPrivate();
+        // @formatter:off
+        return new ECKey.Builder(curve, publicKey)
+                .privateKey(privateKey)
+                .keyUse(KeyUse.SIGNATURE)
+                .algorithm(JWSAlgorithm.parse(algorithm.getName()))
+                .keyID(UUID.randomUUID().toString())
+                .build();
+        // @formatter:on
+    }
+
+    private static KeyPair generateKeyPair(String keyType, ECGenParameterSpec parameterSpec) {
+        KeyPair keyPair;
+        try {
+            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(keyType);
+            if (parameterSpec != null) {
+                keyPairGenerator.initialize(parameterSpec);
+            } else {
+                keyPairGenerator.initialize(2048);
+            }
+            keyPair = keyPairGenerator.generateKeyPair();
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+        return keyPair;
+    }
+}
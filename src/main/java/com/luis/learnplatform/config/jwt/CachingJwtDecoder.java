@@ -0,0 +1,91 @@
+package com.luis.learnplatform.config.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Keeps successfully decoded tokens so that a token sent again skips the signature check.
+ * An entry never outlives the token's {@code exp}; tokens without one are not cached.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private static final String CACHE_NAME = "jwt-decoder";
+
+    private final JwtDecoder delegate;
+    private final Cache<String, Jwt> verifiedTokens;
+
+    public CachingJwtDecoder(JwtDecoder delegate, long maximumSize, MeterRegistry meterRegistry) {
+        this(delegate, maximumSize, meterRegistry, Ticker.systemTicker());
+    }
+
+    CachingJwtDecoder(JwtDecoder delegate, long maximumSize, MeterRegistry meterRegistry, Ticker ticker) {
+        Assert.notNull(delegate, "JwtDecoder cannot be null");
+        Assert.isTrue(maximumSize > 0, "maximumSize must be greater than 0");
+        Assert.notNull(meterRegistry, "MeterRegistry cannot be null");
+        this.delegate = delegate;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new UntilTokenExpires())
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, CACHE_NAME);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String key = cacheKey(token);
+        Jwt jwt = verifiedTokens.getIfPresent(key);
+        if (jwt != null) {
+            return jwt;
+        }
+
+        jwt = delegate.decode(token);
+        if (jwt.getExpiresAt() != null && jwt.getExpiresAt().isAfter(Instant.now())) {
+            verifiedTokens.put(key, jwt);
+        }
+        return jwt;
+    }
+
+    private static String cacheKey(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class UntilTokenExpires implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), jwt.getExpiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.luis.learnplatform.config.jwt;
+
+import com.luis.learnplatform.services.TokenRevocationService;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.util.Assert;
+
+/**
+ * Rejects revoked tokens after decoding. It wraps the caching decoder, so a cached token is
+ * still checked on every request.
+ */
+public class RevocationCheckingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+    private final TokenRevocationService tokenRevocationService;
+
+    public RevocationCheckingJwtDecoder(JwtDecoder delegate, TokenRevocationService tokenRevocationService) {
+        Assert.notNull(delegate, "JwtDecoder cannot be null");
+        Assert.notNull(tokenRevocationService, "TokenRevocationService cannot be null");
+        this.delegate = delegate;
+        this.tokenRevocationService = tokenRevocationService;
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        Jwt jwt = delegate.decode(token);
+        if (tokenRevocationService.isRevoked(jwt)) {
+            throw new BadJwtException("The token has been revoked");
+        }
+        return jwt;
+    }
+}
@@ -0,0 +1,39 @@
+package com.luis.learnplatform.config.jwt;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.util.Assert;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads the authorities of an access token from the compact {@code roles} mask, or from the
+ * {@code authorities} name list of tokens issued with the full profile, returning the shared
+ * instances of {@link RoleAuthorityRegistry}.
+ */
+public class RoleAuthoritiesConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+
+    public static final String ROLES_CLAIM = "roles";
+    public static final String AUTHORITIES_CLAIM = "authorities";
+
+    private final RoleAuthorityRegistry registry;
+
+    public RoleAuthoritiesConverter(RoleAuthorityRegistry registry) {
+        Assert.notNull(registry, "RoleAuthorityRegistry cannot be null");
+        this.registry = registry;
+    }
+
+    @Override
+    public Collection<GrantedAuthority> convert(Jwt jwt) {
+        Object roles = jwt.getClaims().get(ROLES_CLAIM);
+        if (roles instanceof Number mask) {
+            return registry.fromMask(mask.longValue());
+        }
+        if (jwt.getClaims().get(AUTHORITIES_CLAIM) instanceof Collection<?> names) {
+            return registry.fromNames(names);
+        }
+        return List.of();
+    }
+}
@@ -0,0 +1,108 @@
+package com.luis.learnplatform.config.jwt;
+
+import com.luis.learnplatform.entities.Role;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.util.Assert;
+
+import java.util.*;
+
+/**
+ * Maps the rows of {@code tb_role} to shared {@link GrantedAuthority} instances and to a bit
+ * mask where role {@code id} is bit {@code id - 1}, so that tokens can carry a single number
+ * instead of the role names.
+ */
+public class RoleAuthorityRegistry {
+
+    public static final int MAX_ROLE_ID = 63;
+
+    // Masks up to this many bits have their authority list built once, at startup
+    private static final int PRECOMPUTED_BITS = 12;
+
+    private final Map<String, GrantedAuthority> authoritiesByName = new HashMap<>();
+    private final Map<String, List<GrantedAuthority>> singletonsByName = new HashMap<>();
+    private final Map<String, Long> bitsByName = new HashMap<>();
+    private final GrantedAuthority[] authoritiesByBit = new GrantedAuthority[MAX_ROLE_ID];
+    private final List<GrantedAuthority>[] authoritiesByMask;
+
+    @SuppressWarnings("unchecked")
+    public RoleAuthorityRegistry(Collection<Role> roles) {
+        int highestBit = 0;
+        for (Role role : roles) {
+            Assert.isTrue(role.getId() >= 1 && role.getId() <= MAX_ROLE_ID,
+                    () -> "Role ids must be between 1 and " + MAX_ROLE_ID + " to fit in a mask: " + role.getId());
+            GrantedAuthority authority = new SimpleGrantedAuthority(role.getAuthority());
+            int bit = role.getId().intValue() - 1;
+            authoritiesByName.put(authority.getAuthority(), authority);
+            singletonsByName.put(authority.getAuthority(), List.of(authority));
+            bitsByName.put(authority.getAuthority(), 1L << bit);
+            authoritiesByBit[bit] = authority;
+            highestBit = Math.max(highestBit, bit + 1);
+        }
+
+        if (highestBit <= PRECOMPUTED_BITS) {
+            authoritiesByMask = new List[1 << highestBit];
+            for (int mask = 0; mask < authoritiesByMask.length; mask++) {
+                authoritiesByMask[mask] = decode(mask);
+            }
+        } else {
+            authoritiesByMask = null;
+        }
+    }
+
+    /**
+     * @return the mask of {@code authorities}, or {@code null} when one of them is not a known role
+     */
+    public Long toMask(Collection<? extends GrantedAuthority> authorities) {
+        long mask = 0;
+        for (GrantedAuthority authority : authorities) {
+            Long bit = bitsByName.get(authority.getAuthority());
+            if (bit == null) {
+                return null;
+            }
+            mask |= bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Bits of unknown roles are ignored. The returned list is shared and must not be modified.
+     */
+    public List<GrantedAuthority> fromMask(long mask) {
+        if (authoritiesByMask != null) {
+            if (mask >= 0 && mask < authoritiesByMask.length) {
+                return authoritiesByMask[(int) mask];
+            }
+            return decode(mask & (authoritiesByMask.length - 1));
+        }
+        return decode(mask);
+    }
+
+    /**
+     * Names of known roles resolve to their shared instance; other names get a new authority.
+     */
+    public List<GrantedAuthority> fromNames(Collection<?> names) {
+        if (names.size() == 1) {
+            List<GrantedAuthority> singleton = singletonsByName.get(String.valueOf(names.iterator().next()));
+            if (singleton != null) {
+                return singleton;
+            }
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>(names.size());
+        for (Object name : names) {
+            GrantedAuthority authority = authoritiesByName.get(String.valueOf(name));
+            authorities.add(authority != null ? authority : new SimpleGrantedAuthority(String.valueOf(name)));
+        }
+        return authorities;
+    }
+
+    private List<GrantedAuthority> decode(long mask) {
+        List<GrantedAuthority> authorities = new ArrayList<>(Long.bitCount(mask));
+        for (int bit = 0; bit < MAX_ROLE_ID; bit++) {
+            if ((mask & (1L << bit)) != 0 && authoritiesByBit[bit] != null) {
+                authorities.add(authoritiesByBit[bit]);
+            }
+        }
+        return List.copyOf(authorities);
+    }
+}
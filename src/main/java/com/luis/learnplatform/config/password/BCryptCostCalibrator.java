@@ -0,0 +1,86 @@
+package com.luis.learnplatform.config.password;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+/**
+ * Picks the highest BCrypt cost whose hash time on this machine stays within a budget.
+ * Each cost step doubles the work, so measuring stops as soon as the next step would
+ * exceed the budget.
+ */
+public class BCryptCostCalibrator {
+
+    private static final int RUNS = 2;
+
+    private final Duration budget;
+    private final int minCost;
+    private final int maxCost;
+    private final IntFunction<Duration> hashTime;
+
+    public BCryptCostCalibrator(Duration budget, int minCost, int maxCost) {
+        this(budget, minCost, maxCost, BCryptCostCalibrator::measure);
+    }
+
+    BCryptCostCalibrator(Duration budget, int minCost, int maxCost, IntFunction<Duration> hashTime) {
+        Assert.isTrue(budget != null && !budget.isNegative() && !budget.isZero(), "budget must be positive");
+        Assert.isTrue(minCost >= 4 && maxCost <= 31 && minCost <= maxCost, "costs must satisfy 4 <= minCost <= maxCost <= 31");
+        this.budget = budget;
+        this.minCost = minCost;
+        this.maxCost = maxCost;
+        this.hashTime = hashTime;
+    }
+
+    /**
+     * Never returns a cost below {@code minCost}, even when that cost alone is over budget.
+     */
+    public Calibration calibrate() {
+        int cost = minCost;
+        Duration duration = hashTime.apply(cost);
+        while (cost < maxCost && duration.multipliedBy(2).compareTo(budget) <= 0) {
+            Duration next = hashTime.apply(cost + 1);
+            if (next.compareTo(budget) > 0) {
+                break;
+            }
+            cost++;
+            duration = next;
+        }
+        return new Calibration(cost, duration, budget);
+    }
+
+    // Fastest of a few runs, after a warm-up hash at the same cost
+    private static Duration measure(int cost) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(cost);
+        String password = UUID.randomUUID().toString();
+        encoder.encode(password);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            encoder.encode(password);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return Duration.ofNanos(best);
+    }
+
+    public record Calibration(int cost, Duration hashTime, Duration budget) {
+
+        public void bindTo(MeterRegistry meterRegistry) {
+            Gauge.builder("security.password.hash.cost", this, Calibration::cost)
+                    .description("BCrypt cost chosen at startup")
+                    .register(meterRegistry);
+            Gauge.builder("security.password.hash.duration", this, calibration -> calibration.hashTime().toNanos() / 1e6)
+                    .description("Measured time of one hash at the chosen cost")
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            Gauge.builder("security.password.hash.budget", this, calibration -> calibration.budget().toMillis())
+                    .description("Configured time budget for one hash")
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+    }
+}
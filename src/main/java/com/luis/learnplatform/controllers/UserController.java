@@ -1,19 +1,40 @@
 package com.luis.learnplatform.controllers;
 
+import com.luis.learnplatform.config.access.RequiresRole;
+import com.luis.learnplatform.config.access.SelfOrAdmin;
+import com.luis.learnplatform.entities.DTO.CursorPageDTO;
 import com.luis.learnplatform.entities.DTO.EnrollmentDTO;
+import com.luis.learnplatform.entities.DTO.UserImportResultDTO;
 import com.luis.learnplatform.entities.DTO.UserDTO;
 import com.luis.learnplatform.entities.DTO.UserInsertDTO;
+import com.luis.learnplatform.entities.DTO.UserLookupDTO;
+import com.luis.learnplatform.entities.DTO.UserPatchDTO;
+import com.luis.learnplatform.entities.projections.UserVersion;
 import com.luis.learnplatform.services.EnrollmentService;
+import com.luis.learnplatform.services.UserExportService;
+import com.luis.learnplatform.services.UserFileFormat;
+import com.luis.learnplatform.services.UserImportService;
 import com.luis.learnplatform.services.UserService;
+import com.luis.learnplatform.services.exceptions.InvalidRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.List;
 
@@ -21,12 +42,30 @@ import java.util.List;
 @RequestMapping("/users")
 public class UserController {
 
+    // Same cap Spring Data applies to the size of offset pages
+    private static final int MAX_PAGE_SIZE = 2000;
+
+    // Clients may keep a user but must revalidate it with If-None-Match before reusing it
+    private static final CacheControl USER_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
     @Autowired
     private UserService service;
 
     @Autowired
     private EnrollmentService enrollmentService;
 
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserExportService userExportService;
+
+    @Value("${user-lookup.max-ids}")
+    private Integer maxLookupIds;
+
+    @Value("${user-export.timeout}")
+    private Long exportTimeout;
+
 
     //GET http://localhost:8080/users?name=alex
     //GET http://localhost:8080/users?name=alex&page=1&size=5
@@ -39,16 +78,49 @@ public class UserController {
          return ResponseEntity.ok(page);
     }
 
+    //GET http://localhost:8080/users?ids=3,1,2
+    @SelfOrAdmin("ids")
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<UserLookupDTO>> findAllById(@RequestParam List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > maxLookupIds) {
+            throw new InvalidRequestException("ids must list between 1 and " + maxLookupIds + " user ids");
+        }
+        List<UserLookupDTO> users = service.findAllById(ids);
+        return ResponseEntity.ok(users);
+    }
+
+    //GET http://localhost:8080/users/cursor?name=alex&size=5
+    //GET http://localhost:8080/users/cursor?after=<next from the previous page>
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPageDTO<UserDTO>> findAllAfter(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new InvalidRequestException("size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        CursorPageDTO<UserDTO> page = service.findAllAfter(name, after, size);
+        return ResponseEntity.ok(page);
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<UserDTO> findById(@PathVariable Long id) {
+    public ResponseEntity<UserDTO> findById(@PathVariable Long id, WebRequest request) {
+        String eTag = eTag(service.findVersion(id));
+        if (request.checkNotModified(eTag)) {
+            return notModified(eTag);
+        }
         UserDTO user = service.findById(id);
-        return ResponseEntity.ok(user);
+        return ResponseEntity.ok().eTag(eTag).cacheControl(USER_CACHE_CONTROL).body(user);
     }
 
     @GetMapping("/me")
-    public ResponseEntity<UserDTO> getMe() {
+    public ResponseEntity<UserDTO> getMe(WebRequest request) {
+        String eTag = eTag(service.getMyVersion());
+        if (request.checkNotModified(eTag)) {
+            return notModified(eTag);
+        }
         UserDTO user = service.getMe();
-        return ResponseEntity.ok(user);
+        return ResponseEntity.ok().eTag(eTag).cacheControl(USER_CACHE_CONTROL).body(user);
     }
 
     @PostMapping
@@ -59,13 +131,46 @@ public class UserController {
     }
 
 
+    //POST http://localhost:8080/users/import with one JSON user per line (application/x-ndjson)
+    //or a CSV with a name,email,password,roles header and roles separated by | (text/csv)
+    @RequiresRole("ROLE_ADMIN")
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    public ResponseEntity<UserImportResultDTO> importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                           InputStream body) throws IOException {
+        UserImportResultDTO result = userImportService.importUsers(body, contentType);
+        return ResponseEntity.ok(result);
+    }
+
+    //GET http://localhost:8080/users/export with Accept: application/x-ndjson (the default) or text/csv
+    @RequiresRole("ROLE_ADMIN")
+    @GetMapping(value = "/export", produces = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestHeader HttpHeaders headers, WebRequest request) {
+        UserFileFormat format = UserFileFormat.fromAccept(headers.getAccept());
+        // Only the export may run for minutes, so only its async timeout is raised
+        WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest().setTimeout(exportTimeout);
+        StreamingResponseBody body = out -> userExportService.exportUsers(out, format);
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("users." + format.getExtension()).build().toString())
+                .body(body);
+    }
+
+    @SelfOrAdmin("id")
     @PutMapping(value="/{id}")
     public ResponseEntity<UserDTO> update(@PathVariable Long id, @RequestBody UserInsertDTO dto) {
         UserDTO newDto = service.update(id,dto);
         return ResponseEntity.ok(newDto);
     }
 
-    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @SelfOrAdmin("id")
+    @PatchMapping(value="/{id}")
+    public ResponseEntity<UserDTO> patch(@PathVariable Long id, @RequestBody UserPatchDTO dto) {
+        UserDTO newDto = service.patch(id, dto);
+        return ResponseEntity.ok(newDto);
+    }
+
+    @RequiresRole("ROLE_ADMIN")
     @DeleteMapping(value="/{id}")
     public ResponseEntity<Void> delete(@PathVariable Long id) {
         service.delete(id);
@@ -78,4 +183,13 @@ public class UserController {
         return ResponseEntity.ok(list);
     }
 
+    // The version is read before the user, so a concurrent update can only pair a newer body with
+    // an older ETag; the next If-None-Match then misses and the client fetches the user again
+    private static String eTag(UserVersion version) {
+        return "\"" + version.id() + "." + version.version() + "\"";
+    }
+
+    private static ResponseEntity<UserDTO> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(USER_CACHE_CONTROL).build();
+    }
 }
@@ -2,6 +2,7 @@ package com.luis.learnplatform.controllers.exceptions;
 
 import com.luis.learnplatform.services.exceptions.DatabaseException;
 import com.luis.learnplatform.services.exceptions.ForbiddenException;
+import com.luis.learnplatform.services.exceptions.InvalidRequestException;
 import com.luis.learnplatform.services.exceptions.ResourceNotFoundException;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.HttpStatus;
@@ -38,4 +39,12 @@ public class ResourceExceptionHandler {
         return ResponseEntity.status(status).body(err);
     }
 
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<StandardError> invalidRequest(InvalidRequestException e, HttpServletRequest request) {
+        String error ="Invalid request";
+        HttpStatus status = HttpStatus.BAD_REQUEST;
+        StandardError err = new StandardError(Instant.now(), status.value(), error, e.getMessage(), request.getRequestURI());
+        return ResponseEntity.status(status).body(err);
+    }
+
 }
@@ -0,0 +1,34 @@
+package com.luis.learnplatform.entities.DTO;
+
+import java.util.List;
+
+public class CursorPageDTO<T> {
+
+    private List<T> content;
+    private Integer size;
+    private String next;
+
+    public CursorPageDTO() {
+    }
+
+    public CursorPageDTO(List<T> content, Integer size, String next) {
+        this.content = content;
+        this.size = size;
+        this.next = next;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public Integer getSize() {
+        return size;
+    }
+
+    /**
+     * Cursor of the following page, {@code null} on the last page.
+     */
+    public String getNext() {
+        return next;
+    }
+}
@@ -0,0 +1,29 @@
+package com.luis.learnplatform.entities.DTO;
+
+public class UserImportErrorDTO {
+
+    private Integer line;
+    private String email;
+    private String message;
+
+    public UserImportErrorDTO() {
+    }
+
+    public UserImportErrorDTO(Integer line, String email, String message) {
+        this.line = line;
+        this.email = email;
+        this.message = message;
+    }
+
+    public Integer getLine() {
+        return line;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
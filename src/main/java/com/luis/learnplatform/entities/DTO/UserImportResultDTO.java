@@ -0,0 +1,40 @@
+package com.luis.learnplatform.entities.DTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class UserImportResultDTO {
+
+    // Enough to fix a file; a wholly wrong file would otherwise echo back every row
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private Integer imported = 0;
+    private Integer failed = 0;
+    private List<UserImportErrorDTO> errors = new ArrayList<>();
+
+    public Integer getImported() {
+        return imported;
+    }
+
+    public Integer getFailed() {
+        return failed;
+    }
+
+    /**
+     * The first rejected rows, in input order; {@link #getFailed()} counts all of them.
+     */
+    public List<UserImportErrorDTO> getErrors() {
+        return errors;
+    }
+
+    public void addImported(int count) {
+        imported += count;
+    }
+
+    public void addError(Integer line, String email, String message) {
+        failed++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new UserImportErrorDTO(line, email, message));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.luis.learnplatform.entities.DTO;
+
+public class UserLookupDTO {
+
+    private Long id;
+    private Boolean found;
+    private UserDTO user;
+
+    public UserLookupDTO() {
+    }
+
+    public UserLookupDTO(Long id, Boolean found, UserDTO user) {
+        this.id = id;
+        this.found = found;
+        this.user = user;
+    }
+
+    public static UserLookupDTO found(UserDTO user) {
+        return new UserLookupDTO(user.getId(), true, user);
+    }
+
+    public static UserLookupDTO missing(Long id) {
+        return new UserLookupDTO(id, false, null);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Boolean getFound() {
+        return found;
+    }
+
+    /**
+     * The user, {@code null} when no user has the requested id.
+     */
+    public UserDTO getUser() {
+        return user;
+    }
+}
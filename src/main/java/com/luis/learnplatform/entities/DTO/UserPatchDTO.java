@@ -0,0 +1,56 @@
+package com.luis.learnplatform.entities.DTO;
+
+import java.util.Set;
+
+/**
+ * Partial update of a user: {@code null} fields are left as they are.
+ */
+public class UserPatchDTO {
+
+    private String name;
+    private String email;
+    private String password;
+    private Set<RoleDTO> roles;
+
+    public UserPatchDTO() {
+    }
+
+    public UserPatchDTO(String name, String email, String password, Set<RoleDTO> roles) {
+        this.name = name;
+        this.email = email;
+        this.password = password;
+        this.roles = roles;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public Set<RoleDTO> getRoles() {
+        return roles;
+    }
+
+    public void setRoles(Set<RoleDTO> roles) {
+        this.roles = roles;
+    }
+}
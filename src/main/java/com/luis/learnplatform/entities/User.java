@@ -1,7 +1,11 @@
 package com.luis.learnplatform.entities;
 
 
+import com.luis.learnplatform.util.Trigrams;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.OptimisticLock;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
@@ -9,7 +13,8 @@ import org.springframework.security.core.userdetails.UserDetails;
 import java.util.*;
 
 @Entity
-@Table(name="tb_user")
+@DynamicUpdate
+@Table(name="tb_user", indexes = @Index(name = "idx_user_name_id", columnList = "name, id"))
 public class User implements UserDetails{
 
     @Id
@@ -19,10 +24,24 @@ public class User implements UserDetails{
     private String email;
     private String password;
 
+    // Also the ETag of the user; rows inserted with plain SQL start at 0
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
     @ManyToMany
     @JoinTable(name="tb_user_role",joinColumns = @JoinColumn(name="user_id"),inverseJoinColumns = @JoinColumn(name="role_id"))
     private Set<Role> roles=new HashSet<>();
 
+    // Lets name searches use an index instead of scanning every name with LIKE '%x%'
+    @ElementCollection
+    @CollectionTable(name = "tb_user_name_trigram", joinColumns = @JoinColumn(name = "user_id"),
+            indexes = @Index(name = "idx_user_name_trigram", columnList = "trigram, user_id"))
+    @Column(name = "trigram", length = 12)
+    @OptimisticLock(excluded = true)
+    private Set<String> nameTrigrams = new HashSet<>();
+
     @OneToMany(mappedBy = "user")
     private Set<Notification> notifications=new HashSet<>();
 
@@ -37,6 +56,7 @@ public class User implements UserDetails{
         this.name = name;
         this.email = email;
         this.password = password;
+        indexName();
     }
 
     public Long getId() {
@@ -52,7 +72,22 @@ public class User implements UserDetails{
     }
 
     public void setName(String name) {
-        this.name = name;
+        if (!Objects.equals(this.name, name)) {
+            this.name = name;
+            indexName();
+        }
+    }
+
+    /**
+     * Rebuilds the name trigrams; only needed for rows written without going through {@link #setName}.
+     */
+    public void indexName() {
+        nameTrigrams.clear();
+        nameTrigrams.addAll(Trigrams.ofValue(name));
+    }
+
+    public Long getVersion() {
+        return version;
     }
 
     public String getEmail() {
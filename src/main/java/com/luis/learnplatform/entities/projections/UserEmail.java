@@ -0,0 +1,4 @@
+package com.luis.learnplatform.entities.projections;
+
+public record UserEmail(Long id, String email) {
+}
@@ -0,0 +1,4 @@
+package com.luis.learnplatform.entities.projections;
+
+public record UserVersion(Long id, Long version) {
+}
@@ -2,14 +2,25 @@
 
     import com.luis.learnplatform.entities.User;
     import com.luis.learnplatform.entities.projections.UserDetailsProjection;
+    import com.luis.learnplatform.entities.projections.UserEmail;
+    import com.luis.learnplatform.entities.projections.UserVersion;
+    import jakarta.persistence.QueryHint;
+    import org.hibernate.jpa.HibernateHints;
+    import org.springframework.data.domain.Limit;
     import org.springframework.data.domain.Page;
     import org.springframework.data.domain.Pageable;
+    import org.springframework.data.jpa.repository.EntityGraph;
     import org.springframework.data.jpa.repository.JpaRepository;
+    import org.springframework.data.jpa.repository.Modifying;
     import org.springframework.data.jpa.repository.Query;
+    import org.springframework.data.jpa.repository.QueryHints;
     import org.springframework.stereotype.Repository;
 
+    import java.util.Collection;
     import java.util.List;
     import java.util.Optional;
+    import java.util.Set;
+    import java.util.stream.Stream;
 
 
     @Repository
@@ -19,8 +30,61 @@
 
         Page<User> findByNameContainingIgnoreCase(String name,Pageable pageable);
 
-        @Query(nativeQuery = true, value = "SELECT tb_user.email AS username,tb_user.password,tb_role.id AS roleId,tb_role.authority FROM tb_user INNER JOIN tb_user_role ON tb_user.id=tb_user_role.user_id INNER JOIN tb_role ON tb_role.id=tb_user_role.role_id WHERE tb_user.email = :email")
+        // Candidates come from the trigram index; LOCATE then drops those whose trigrams only match out of order.
+        // Exact matches rank first, then prefixes, then word prefixes, then any other substring.
+        @Query(value = "SELECT u FROM User u WHERE u.id IN (SELECT v.id FROM User v JOIN v.nameTrigrams t WHERE t IN :trigrams GROUP BY v.id HAVING COUNT(t) = :trigramCount) "
+                + "AND LOCATE(UPPER(:name), UPPER(u.name)) > 0 "
+                + "ORDER BY CASE WHEN UPPER(u.name) = UPPER(:name) THEN 0 "
+                + "WHEN LOCATE(UPPER(:name), UPPER(u.name)) = 1 THEN 1 "
+                + "WHEN LOCATE(CONCAT(' ', UPPER(:name)), UPPER(u.name)) > 0 THEN 2 ELSE 3 END",
+                countQuery = "SELECT COUNT(u) FROM User u WHERE u.id IN (SELECT v.id FROM User v JOIN v.nameTrigrams t WHERE t IN :trigrams GROUP BY v.id HAVING COUNT(t) = :trigramCount) "
+                + "AND LOCATE(UPPER(:name), UPPER(u.name)) > 0")
+        Page<User> searchByName(String name, Set<String> trigrams, long trigramCount, Pageable pageable);
+
+        @Query("SELECT u FROM User u WHERE u.id > :after AND u.nameTrigrams IS EMPTY AND u.name IS NOT NULL ORDER BY u.id")
+        List<User> findUnindexedNames(Long after, Limit limit);
+
+        // Seek past (name, id); "u.name >= :name" lets the (name, id) index start at the cursor
+        @Query("SELECT u FROM User u WHERE u.name >= :name AND (u.name > :name OR u.id > :id) ORDER BY u.name, u.id")
+        List<User> findPageAfter(String name, Long id, Limit limit);
+
+        @Query("SELECT u FROM User u WHERE UPPER(u.name) LIKE UPPER(CONCAT('%', :filter, '%')) AND u.name >= :name AND (u.name > :name OR u.id > :id) ORDER BY u.name, u.id")
+        List<User> findPageAfterByNameContaining(String filter, String name, Long id, Limit limit);
+
+        @Query(nativeQuery = true, value = "SELECT tb_user.id AS userId,tb_user.email AS username,tb_user.password,tb_role.id AS roleId,tb_role.authority FROM tb_user INNER JOIN tb_user_role ON tb_user.id=tb_user_role.user_id INNER JOIN tb_role ON tb_role.id=tb_user_role.role_id WHERE tb_user.email = :email")
         public List<UserDetailsProjection> searchUserAndRolesByEmail(String email);
 
         Optional<User> findByEmail(String email);
+
+        // Only the columns an ETag needs, so a conditional GET loads no entity
+        @Query("SELECT new com.luis.learnplatform.entities.projections.UserVersion(u.id, u.version) FROM User u WHERE u.id = :id")
+        Optional<UserVersion> findVersionById(Long id);
+
+        @Query("SELECT new com.luis.learnplatform.entities.projections.UserVersion(u.id, u.version) FROM User u WHERE u.email = :email")
+        Optional<UserVersion> findVersionByEmail(String email);
+
+        // Loads the roles of users already in the persistence context in one query
+        @EntityGraph(attributePaths = "roles")
+        List<User> findWithRolesByIdIn(Collection<Long> ids);
+
+        // Forward-only read of every user; must be consumed inside a transaction and closed.
+        // The fetch size matches the batches UserExportService clears the persistence context after.
+        @QueryHints({
+                @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+                @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+        })
+        @Query("SELECT u FROM User u ORDER BY u.id")
+        Stream<User> streamAllOrderById();
+
+        @Query("SELECT new com.luis.learnplatform.entities.projections.UserEmail(u.id, u.email) FROM User u WHERE u.id > :after ORDER BY u.id")
+        List<UserEmail> findEmailsAfter(Long after);
+
+        // The two digits after "$2a$", e.g. 10 for "$2a$10$...", most frequent first
+        @Query("SELECT SUBSTRING(u.password, LOCATE('$2', u.password) + 4, 2) FROM User u "
+                + "GROUP BY SUBSTRING(u.password, LOCATE('$2', u.password) + 4, 2) ORDER BY COUNT(u) DESC")
+        List<String> findPasswordCostsByFrequency(Limit limit);
+
+        @Modifying
+        @Query("UPDATE User u SET u.password = :newPassword WHERE u.email = :email AND u.password = :oldPassword")
+        int updatePassword(String email, String oldPassword, String newPassword);
     }
@@ -0,0 +1,86 @@
+package com.luis.learnplatform.services;
+
+import com.luis.learnplatform.entities.projections.UserEmail;
+import com.luis.learnplatform.repositories.UserRepository;
+import com.luis.learnplatform.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Membership filter over the emails of all users, loaded before the application starts
+ * serving requests. Logins for an email it has never seen are rejected without a query.
+ *
+ * <p>Users inserted by another node or outside {@link UserService} are picked up by
+ * {@link #refresh}, which reads the users with an id above the highest one seen. Emails
+ * changed on another node, and users whose insert committed after one with a higher id,
+ * are picked up by the periodic {@link #reload}.
+ *
+ * <p>Deleted users are not removed; their emails only cost the lookup they cost before.
+ */
+@Component
+public class RegisteredEmailFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegisteredEmailFilter.class);
+
+    @Autowired
+    private UserRepository repository;
+
+    @Value("${security.email-filter.expected-insertions}")
+    private Long expectedInsertions;
+
+    @Value("${security.email-filter.false-positive-probability}")
+    private Double falsePositiveProbability;
+
+    private volatile BloomFilter filter;
+    private volatile long lastUserId;
+
+    @PostConstruct
+    public void load() {
+        List<UserEmail> users = repository.findEmailsAfter(0L);
+        BloomFilter filter = new BloomFilter(Math.max(expectedInsertions, users.size() * 2L), falsePositiveProbability);
+        users.forEach(user -> filter.put(user.email()));
+        this.filter = filter;
+        advance(users);
+        logger.info("Loaded {} registered emails into a {} bit filter", users.size(), filter.bitCount());
+    }
+
+    @Scheduled(fixedDelayString = "${security.email-filter.refresh-interval}",
+            initialDelayString = "${security.email-filter.refresh-interval}")
+    public synchronized void refresh() {
+        List<UserEmail> users = repository.findEmailsAfter(lastUserId);
+        users.forEach(user -> add(user.email()));
+        advance(users);
+    }
+
+    // Adds to the current filter instead of replacing it, so no email added meanwhile is lost
+    @Scheduled(fixedDelayString = "${security.email-filter.reload-interval}",
+            initialDelayString = "${security.email-filter.reload-interval}")
+    public synchronized void reload() {
+        List<UserEmail> users = repository.findEmailsAfter(0L);
+        users.forEach(user -> add(user.email()));
+        advance(users);
+    }
+
+    public void add(String email) {
+        if (email != null) {
+            filter.put(email);
+        }
+    }
+
+    public boolean mightBeRegistered(String email) {
+        return email != null && filter.mightContain(email);
+    }
+
+    private void advance(List<UserEmail> users) {
+        if (!users.isEmpty()) {
+            lastUserId = Math.max(lastUserId, users.get(users.size() - 1).id());
+        }
+    }
+}
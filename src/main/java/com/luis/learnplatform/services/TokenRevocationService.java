@@ -0,0 +1,221 @@
+package com.luis.learnplatform.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.luis.learnplatform.util.FingerprintSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deny-list for self-contained access tokens, which stay valid until they expire otherwise.
+ *
+ * <p>Single tokens are revoked by {@code jti}, kept in a {@link FingerprintSet}. The set is
+ * replaced once per access token lifetime and the previous one kept for another lifetime,
+ * so every entry outlives its token without tracking expiry per entry. Memory therefore
+ * holds the ids revoked over up to two lifetimes, at 32 to 64 bytes each. Revoking a user
+ * rejects every token issued to them before that moment; those entries are kept for the
+ * refresh token lifetime so that refresh tokens are covered as well.
+ *
+ * <p>Every revocation is also written to the {@code token_revocation} table. Each node loads
+ * the unexpired rows at startup and then only the rows added since, so a revocation reaches
+ * the other nodes within one refresh interval and survives restarts. A user revocation made
+ * inside a transaction is only published if that transaction commits.
+ */
+public class TokenRevocationService {
+
+    private static final String USER_ID_CLAIM = "user_id";
+
+    // Ids are allocated before commit, so a row can become visible after one with a higher id
+    private static final long LATE_COMMIT_IDS = 100;
+
+    private static final String SELECT_SQL = "SELECT id, token_id, user_id, revoked_at FROM token_revocation WHERE id > ? AND expires_at > ? ORDER BY id";
+    private static final String INSERT_SQL = "INSERT INTO token_revocation (token_id, user_id, revoked_at, expires_at) VALUES (?, ?, ?, ?)";
+    private static final String DELETE_SQL = "DELETE FROM token_revocation WHERE expires_at <= ?";
+
+    private final JdbcOperations jdbcOperations;
+    private final Clock clock;
+    private final Duration userRevocationTimeToLive;
+    private final long rotationIntervalMillis;
+    private final Cache<Long, Instant> revokedUsers;
+    private final Counter rejections;
+    private final Object rotationLock = new Object();
+    private volatile FingerprintSet currentTokens;
+    private volatile FingerprintSet previousTokens;
+    private volatile long nextRotationMillis;
+    private long lastId;
+
+    public TokenRevocationService(JdbcOperations jdbcOperations, Duration accessTokenTimeToLive,
+                                  Duration refreshTokenTimeToLive, MeterRegistry meterRegistry) {
+        this(jdbcOperations, accessTokenTimeToLive, refreshTokenTimeToLive, meterRegistry, Clock.systemUTC());
+    }
+
+    TokenRevocationService(JdbcOperations jdbcOperations, Duration accessTokenTimeToLive,
+                           Duration refreshTokenTimeToLive, MeterRegistry meterRegistry, Clock clock) {
+
+        Assert.notNull(jdbcOperations, "JdbcOperations cannot be null");
+        Assert.isTrue(accessTokenTimeToLive != null && accessTokenTimeToLive.toMillis() > 0,
+                "accessTokenTimeToLive must be positive");
+        Assert.notNull(refreshTokenTimeToLive, "refreshTokenTimeToLive cannot be null");
+        Assert.notNull(meterRegistry, "MeterRegistry cannot be null");
+        this.jdbcOperations = jdbcOperations;
+        this.clock = clock;
+        this.rotationIntervalMillis = accessTokenTimeToLive.toMillis();
+        this.userRevocationTimeToLive = refreshTokenTimeToLive.compareTo(accessTokenTimeToLive) > 0
+                ? refreshTokenTimeToLive : accessTokenTimeToLive;
+        this.currentTokens = new FingerprintSet(16);
+        this.previousTokens = new FingerprintSet(16);
+        this.nextRotationMillis = clock.millis() + rotationIntervalMillis;
+        this.revokedUsers = Caffeine.newBuilder()
+                .expireAfterWrite(userRevocationTimeToLive)
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                .build();
+
+        this.rejections = Counter.builder("security.token.revocation.rejections")
+                .description("Access tokens rejected because they were revoked")
+                .register(meterRegistry);
+        Gauge.builder("security.token.revocation.tokens", this,
+                        service -> service.currentTokens.size() + service.previousTokens.size())
+                .description("Revoked token ids held in the deny-list")
+                .register(meterRegistry);
+        Gauge.builder("security.token.revocation.users", revokedUsers, Cache::estimatedSize)
+                .description("Users whose earlier tokens are rejected")
+                .register(meterRegistry);
+        refresh();
+    }
+
+    /**
+     * Rejects the token with id {@code tokenId} until {@code expiresAt}.
+     */
+    public void revokeToken(String tokenId, Instant expiresAt) {
+        Instant now = clock.instant();
+        if (tokenId == null || (expiresAt != null && !expiresAt.isAfter(now))) {
+            return;
+        }
+        rotateIfDue(clock.millis());
+        currentTokens.add(tokenId);
+        jdbcOperations.update(INSERT_SQL, tokenId, null, Timestamp.from(now),
+                Timestamp.from(expiresAt != null ? expiresAt : now.plusMillis(rotationIntervalMillis)));
+    }
+
+    /**
+     * Rejects every token issued to the user up to now. Inside a transaction this only takes
+     * effect if it commits: the revocation is published right before commit and applied here
+     * after it, so tokens issued while the change was being committed are rejected too.
+     */
+    public void revokeUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Instant now = clock.instant();
+            addUser(userId, now);
+            publishUser(userId, now);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                publishUser(userId, clock.instant());
+            }
+
+            @Override
+            public void afterCommit() {
+                addUser(userId, clock.instant());
+            }
+        });
+    }
+
+    /**
+     * Whether an access token was revoked, either by id or through its user. Token timestamps
+     * have second precision and are compared as they are, so a token issued in the same second
+     * as a user revocation is rejected, even one issued just after it.
+     */
+    public boolean isRevoked(Jwt jwt) {
+        rotateIfDue(clock.millis());
+        boolean revoked = false;
+        if (revokedUsers.estimatedSize() > 0 && jwt.getClaims().get(USER_ID_CLAIM) instanceof Number userId) {
+            Instant revokedAt = revokedUsers.getIfPresent(userId.longValue());
+            Instant issuedAt = jwt.getIssuedAt();
+            revoked = revokedAt != null && (issuedAt == null || issuedAt.isBefore(revokedAt));
+        }
+        String tokenId = jwt.getId();
+        if (!revoked && tokenId != null) {
+            revoked = currentTokens.contains(tokenId) || previousTokens.contains(tokenId);
+        }
+        if (revoked) {
+            rejections.increment();
+        }
+        return revoked;
+    }
+
+    /**
+     * Whether the user was revoked after a token issued at {@code issuedAt}, e.g. a refresh token.
+     */
+    public boolean isUserRevokedSince(Long userId, Instant issuedAt) {
+        if (userId == null) {
+            return false;
+        }
+        Instant revokedAt = revokedUsers.getIfPresent(userId);
+        return revokedAt != null && (issuedAt == null || issuedAt.isBefore(revokedAt));
+    }
+
+    /**
+     * Loads the revocations published by every node since the last call, going back
+     * {@link #LATE_COMMIT_IDS} ids to catch rows committed out of order, and deletes the
+     * expired ones. Entries are only ever added, so revocations made on this node meanwhile
+     * are kept.
+     */
+    @Scheduled(fixedDelayString = "${security.token-revocation.refresh-interval}",
+            initialDelayString = "${security.token-revocation.refresh-interval}")
+    public synchronized void refresh() {
+        Timestamp now = Timestamp.from(clock.instant());
+        rotateIfDue(clock.millis());
+        jdbcOperations.query(SELECT_SQL, rs -> {
+            lastId = Math.max(lastId, rs.getLong("id"));
+            String tokenId = rs.getString("token_id");
+            long userId = rs.getLong("user_id");
+            if (tokenId != null) {
+                currentTokens.add(tokenId);
+            } else if (!rs.wasNull()) {
+                addUser(userId, rs.getTimestamp("revoked_at").toInstant());
+            }
+        }, Math.max(0, lastId - LATE_COMMIT_IDS), now);
+        jdbcOperations.update(DELETE_SQL, now);
+    }
+
+    // Joins the caller's transaction, so other nodes only see the row once the change is committed
+    private void publishUser(Long userId, Instant revokedAt) {
+        jdbcOperations.update(INSERT_SQL, null, userId, Timestamp.from(revokedAt),
+                Timestamp.from(revokedAt.plus(userRevocationTimeToLive)));
+    }
+
+    private void addUser(Long userId, Instant revokedAt) {
+        revokedUsers.asMap().merge(userId, revokedAt, (a, b) -> a.isAfter(b) ? a : b);
+    }
+
+    private void rotateIfDue(long nowMillis) {
+        if (nowMillis < nextRotationMillis) {
+            return;
+        }
+        synchronized (rotationLock) {
+            if (nowMillis >= nextRotationMillis) {
+                previousTokens = currentTokens;
+                currentTokens = new FingerprintSet(16);
+                nextRotationMillis = nowMillis + rotationIntervalMillis;
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.luis.learnplatform.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.luis.learnplatform.entities.projections.UserDetailsProjection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Login lookups ({@code searchUserAndRolesByEmail} rows) keyed by email. Unknown emails are
+ * not cached, so a new user can log in right after being created.
+ *
+ * <p>Every eviction is also written to the {@code user_details_eviction} table, and each node
+ * drops the emails added there since its last {@link #refresh}. A changed password or role is
+ * therefore served from another node's cache for at most one refresh interval, not the TTL.
+ * Rows are deleted once the TTL has passed, as every entry cached before them has expired.
+ */
+public class UserDetailsCache {
+
+    private static final String CACHE_NAME = "user-details";
+
+    // Ids are allocated before commit, so a row can become visible after one with a higher id
+    private static final long LATE_COMMIT_IDS = 100;
+
+    private static final String SELECT_LAST_ID_SQL = "SELECT COALESCE(MAX(id), 0) FROM user_details_eviction";
+    private static final String SELECT_SQL = "SELECT id, email FROM user_details_eviction WHERE id > ? ORDER BY id";
+    private static final String INSERT_SQL = "INSERT INTO user_details_eviction (email, expires_at) VALUES (?, ?)";
+    private static final String DELETE_SQL = "DELETE FROM user_details_eviction WHERE expires_at <= ?";
+
+    private final JdbcOperations jdbcOperations;
+    private final Duration ttl;
+    private final Clock clock;
+    private final Cache<String, List<UserDetailsProjection>> users;
+    private long lastId;
+
+    public UserDetailsCache(JdbcOperations jdbcOperations, long maximumSize, Duration ttl, MeterRegistry meterRegistry) {
+        this(jdbcOperations, maximumSize, ttl, meterRegistry, Ticker.systemTicker(), Clock.systemUTC());
+    }
+
+    UserDetailsCache(JdbcOperations jdbcOperations, long maximumSize, Duration ttl, MeterRegistry meterRegistry,
+                     Ticker ticker, Clock clock) {
+        Assert.notNull(jdbcOperations, "JdbcOperations cannot be null");
+        Assert.isTrue(maximumSize > 0, "maximumSize must be greater than 0");
+        Assert.notNull(ttl, "ttl cannot be null");
+        Assert.notNull(meterRegistry, "MeterRegistry cannot be null");
+        this.jdbcOperations = jdbcOperations;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, CACHE_NAME);
+        // Nothing is cached yet, so earlier evictions can be skipped
+        this.lastId = jdbcOperations.queryForObject(SELECT_LAST_ID_SQL, Long.class);
+    }
+
+    public List<UserDetailsProjection> get(String email, Function<String, List<UserDetailsProjection>> loader) {
+        List<UserDetailsProjection> result = users.getIfPresent(email);
+        if (result != null) {
+            return result;
+        }
+        result = List.copyOf(loader.apply(email));
+        if (!result.isEmpty()) {
+            users.put(email, result);
+        }
+        return result;
+    }
+
+    /**
+     * Drops the entry for {@code email} on every node. Inside a transaction the local drop is
+     * repeated after commit, so a login running concurrently cannot cache the rows as they were
+     * before the change, and the other nodes are only told if it commits.
+     */
+    public void evict(String email) {
+        if (email == null) {
+            return;
+        }
+        users.invalidate(email);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(email);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                publish(email);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                users.invalidate(email);
+            }
+        });
+    }
+
+    /**
+     * Drops the emails evicted on any node since the last call and deletes the rows older than
+     * the TTL. The last {@link #LATE_COMMIT_IDS} rows are read again, which also drops an entry
+     * a concurrent login cached from the rows as they were before a late commit.
+     */
+    @Scheduled(fixedDelayString = "${security.user-details-cache.refresh-interval}",
+            initialDelayString = "${security.user-details-cache.refresh-interval}")
+    public synchronized void refresh() {
+        jdbcOperations.query(SELECT_SQL, rs -> {
+            lastId = Math.max(lastId, rs.getLong("id"));
+            users.invalidate(rs.getString("email"));
+        }, Math.max(0, lastId - LATE_COMMIT_IDS));
+        jdbcOperations.update(DELETE_SQL, Timestamp.from(clock.instant()));
+    }
+
+    public CacheStats stats() {
+        return users.stats();
+    }
+
+    // Joins the caller's transaction, so other nodes only see the row once the change is committed
+    private void publish(String email) {
+        Instant now = clock.instant();
+        jdbcOperations.update(INSERT_SQL, email, Timestamp.from(now.plus(ttl)));
+    }
+}
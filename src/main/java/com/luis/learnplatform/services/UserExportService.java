@@ -0,0 +1,147 @@
+package com.luis.learnplatform.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.luis.learnplatform.entities.Role;
+import com.luis.learnplatform.entities.User;
+import com.luis.learnplatform.repositories.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes every user and their roles as NDJSON or CSV while reading them from a forward-only
+ * query. Users are handled in batches: the roles of a batch are loaded with one query, the
+ * batch is written and flushed, and the persistence context is cleared so memory stays flat
+ * however many users there are.
+ */
+@Service
+public class UserExportService {
+
+    // Same as the fetch size of UserRepository.streamAllOrderById
+    private static final int BATCH_SIZE = 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(UserExportService.class);
+    private static final String CSV_HEADER = "id,name,email,roles";
+    private static final String CSV_ROLE_SEPARATOR = "|";
+
+    @Autowired
+    private UserRepository repository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * @return the number of users written
+     */
+    @Transactional(readOnly = true)
+    public long exportUsers(OutputStream out, UserFileFormat format) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setRootValueSeparator(null);
+        if (format == UserFileFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        long count = 0;
+        List<User> batch = new ArrayList<>(BATCH_SIZE);
+        try (Stream<User> users = repository.streamAllOrderById()) {
+            Iterator<User> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == BATCH_SIZE) {
+                    count += writeBatch(batch, format, writer, generator);
+                }
+            }
+        }
+        count += writeBatch(batch, format, writer, generator);
+        generator.flush();
+
+        logger.info("Exported {} users as {}", count, format);
+        return count;
+    }
+
+    private int writeBatch(List<User> batch, UserFileFormat format, Writer writer, JsonGenerator generator)
+            throws IOException {
+
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        repository.findWithRolesByIdIn(batch.stream().map(User::getId).toList());
+        for (User user : batch) {
+            List<String> roles = user.getRoles().stream()
+                    .sorted(Comparator.comparing(Role::getId))
+                    .map(Role::getAuthority)
+                    .toList();
+            if (format == UserFileFormat.CSV) {
+                writeCsv(writer, user, roles);
+            } else {
+                writeJson(generator, user, roles);
+            }
+        }
+        generator.flush();
+
+        // Nothing is written back, so the batch can be dropped as a whole
+        int size = batch.size();
+        batch.clear();
+        entityManager.clear();
+        return size;
+    }
+
+    private static void writeJson(JsonGenerator generator, User user, List<String> roles) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", user.getId());
+        generator.writeStringField("name", user.getName());
+        generator.writeStringField("email", user.getEmail());
+        generator.writeArrayFieldStart("roles");
+        for (String role : roles) {
+            generator.writeString(role);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static void writeCsv(Writer writer, User user, List<String> roles) throws IOException {
+        writer.write(String.valueOf(user.getId()));
+        writer.write(',');
+        writer.write(csvField(user.getName()));
+        writer.write(',');
+        writer.write(csvField(user.getEmail()));
+        writer.write(',');
+        writer.write(csvField(String.join(CSV_ROLE_SEPARATOR, roles)));
+        writer.write('\n');
+    }
+
+    // RFC 4180: quote fields holding a separator, a quote or a line break, doubling inner quotes
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+}
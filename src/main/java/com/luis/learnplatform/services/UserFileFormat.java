@@ -0,0 +1,59 @@
+package com.luis.learnplatform.services;
+
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * File formats users are imported from and exported to: one JSON object per line, or CSV
+ * with a header row and roles separated by {@code |}.
+ */
+public enum UserFileFormat {
+
+    NDJSON(MediaType.APPLICATION_NDJSON, "ndjson"),
+    CSV(MediaType.parseMediaType("text/csv"), "csv");
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    UserFileFormat(MediaType mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @return the format of a request body, or {@code null} when it is neither format
+     */
+    public static UserFileFormat fromContentType(MediaType contentType) {
+        for (UserFileFormat format : values()) {
+            if (format.mediaType.isCompatibleWith(contentType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the first format the {@code Accept} header asks for by name or by a wildcard
+     * covering only that format, NDJSON otherwise
+     */
+    public static UserFileFormat fromAccept(List<MediaType> accept) {
+        for (MediaType type : accept) {
+            if (type.includes(CSV.mediaType) && !type.includes(NDJSON.mediaType)) {
+                return CSV;
+            }
+            if (type.includes(NDJSON.mediaType)) {
+                return NDJSON;
+            }
+        }
+        return NDJSON;
+    }
+}
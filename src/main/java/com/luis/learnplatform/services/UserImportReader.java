@@ -0,0 +1,154 @@
+package com.luis.learnplatform.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.luis.learnplatform.services.exceptions.InvalidRequestException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads users to import one line at a time, from NDJSON objects or from CSV with a header
+ * row, so the body is never held in memory. A line that cannot be read becomes a row with an
+ * error instead of ending the import.
+ */
+class UserImportReader {
+
+    record Row(int line, String name, String email, String password, List<String> roles, String error) {
+
+        static Row invalid(int line, String error) {
+            return new Row(line, null, null, null, List.of(), error);
+        }
+    }
+
+    private static final String CSV_ROLE_SEPARATOR = "\\|";
+
+    private final BufferedReader reader;
+    private final UserFileFormat format;
+    private final ObjectMapper objectMapper;
+    private Map<String, Integer> csvColumns;
+    private int line;
+
+    UserImportReader(Reader reader, UserFileFormat format, ObjectMapper objectMapper) {
+        this.reader = new BufferedReader(reader);
+        this.format = format;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return the next row, or {@code null} at the end of the input
+     * @throws InvalidRequestException when a CSV header row lacks a required column
+     */
+    Row next() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            line++;
+            if (text == null) {
+                return null;
+            }
+        } while (text.isBlank());
+
+        if (format == UserFileFormat.NDJSON) {
+            return readJson(text);
+        }
+        if (csvColumns == null) {
+            csvColumns = readCsvHeader(text);
+            return next();
+        }
+        return readCsv(text);
+    }
+
+    private Row readJson(String text) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(text);
+        } catch (JsonProcessingException e) {
+            return Row.invalid(line, "Malformed JSON");
+        }
+        if (!node.isObject()) {
+            return Row.invalid(line, "Expected a JSON object");
+        }
+        List<String> roles = new ArrayList<>();
+        for (JsonNode role : node.path("roles")) {
+            roles.add(role.asText());
+        }
+        return new Row(line, text(node, "name"), text(node, "email"), text(node, "password"), roles, null);
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private Map<String, Integer> readCsvHeader(String text) {
+        List<String> names = splitCsv(text);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; names != null && i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("name") || !columns.containsKey("email") || !columns.containsKey("password")) {
+            throw new InvalidRequestException("The CSV header must name the name, email and password columns");
+        }
+        return columns;
+    }
+
+    private Row readCsv(String text) {
+        List<String> fields = splitCsv(text);
+        if (fields == null) {
+            return Row.invalid(line, "Malformed CSV row");
+        }
+        List<String> roles = new ArrayList<>();
+        String roleField = csvField(fields, "roles");
+        if (roleField != null && !roleField.isBlank()) {
+            for (String role : roleField.split(CSV_ROLE_SEPARATOR)) {
+                roles.add(role.trim());
+            }
+        }
+        return new Row(line, csvField(fields, "name"), csvField(fields, "email"), csvField(fields, "password"), roles, null);
+    }
+
+    private String csvField(List<String> fields, String column) {
+        Integer index = csvColumns.get(column);
+        return index == null || index >= fields.size() ? null : fields.get(index);
+    }
+
+    // RFC 4180 fields on a single line; null when a quote is left open
+    private static List<String> splitCsv(String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,238 @@
+package com.luis.learnplatform.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.luis.learnplatform.entities.DTO.UserImportResultDTO;
+import com.luis.learnplatform.entities.Role;
+import com.luis.learnplatform.repositories.RoleRepository;
+import com.luis.learnplatform.services.exceptions.InvalidRequestException;
+import com.luis.learnplatform.util.Trigrams;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Creates users in bulk from a streamed NDJSON or CSV body. Rows are processed in batches:
+ * each batch is checked against the database with one query, its passwords are hashed on a
+ * bounded pool and it is written with JDBC batch inserts in its own transaction. Rejected
+ * rows are reported and do not stop the import.
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+    private static final String EXECUTOR_NAME = "user-import";
+
+    // @formatter:off
+    private static final String FIND_EXISTING_EMAILS_SQL = "SELECT email FROM tb_user WHERE email IN (:emails)";
+    private static final String INSERT_USER_SQL = "INSERT INTO tb_user (name, email, password) VALUES (:name, :email, :password)";
+    private static final String INSERT_USER_ROLE_SQL = "INSERT INTO tb_user_role (user_id, role_id) VALUES (:userId, :roleId)";
+    private static final String INSERT_TRIGRAM_SQL = "INSERT INTO tb_user_name_trigram (user_id, trigram) VALUES (:userId, :trigram)";
+    // @formatter:on
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private RoleRepository roleRepository;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    @Autowired
+    private RegisteredEmailFilter registeredEmailFilter;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${user-import.batch-size}")
+    private Integer batchSize;
+
+    @Value("${user-import.hash-pool-size}")
+    private Integer hashPoolSize;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        // When the queue is full the importing thread hashes too, which bounds the work in flight
+        executor = new ThreadPoolExecutor(hashPoolSize, hashPoolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(batchSize), new CustomizableThreadFactory(EXECUTOR_NAME + "-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        new ExecutorServiceMetrics(executor, EXECUTOR_NAME, Tags.empty()).bindTo(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public UserImportResultDTO importUsers(InputStream body, MediaType contentType) throws IOException {
+        UserFileFormat format = UserFileFormat.fromContentType(contentType);
+        if (format == null) {
+            throw new InvalidRequestException("Users can be imported from application/x-ndjson or text/csv");
+        }
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        UserImportReader reader = new UserImportReader(new InputStreamReader(body, charset), format, objectMapper);
+
+        Map<String, Role> roles = roleRepository.findAll().stream()
+                .collect(Collectors.toMap(Role::getAuthority, Function.identity()));
+        Set<String> seenEmails = new HashSet<>();
+        UserImportResultDTO result = new UserImportResultDTO();
+        List<UserImportReader.Row> batch = new ArrayList<>(batchSize);
+        for (UserImportReader.Row row = reader.next(); row != null; row = reader.next()) {
+            batch.add(row);
+            if (batch.size() == batchSize) {
+                importBatch(batch, roles, seenEmails, result);
+                batch.clear();
+            }
+        }
+        importBatch(batch, roles, seenEmails, result);
+
+        logger.info("Imported {} users, rejected {}", result.getImported(), result.getFailed());
+        return result;
+    }
+
+    private void importBatch(List<UserImportReader.Row> batch, Map<String, Role> roles, Set<String> seenEmails,
+                             UserImportResultDTO result) {
+
+        // Rejections are kept by position so they are reported in input order
+        String[] errors = new String[batch.size()];
+        List<UserImportReader.Row> rows = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            UserImportReader.Row row = batch.get(i);
+            errors[i] = row.error() != null ? row.error() : validate(row, roles, seenEmails);
+            if (errors[i] == null) {
+                rows.add(row);
+            }
+        }
+
+        if (!rows.isEmpty()) {
+            Set<String> existingEmails = new HashSet<>(jdbcTemplate.queryForList(FIND_EXISTING_EMAILS_SQL,
+                    Map.of("emails", rows.stream().map(UserImportReader.Row::email).toList()), String.class));
+            rows.removeIf(row -> existingEmails.contains(row.email()));
+            for (int i = 0; i < batch.size(); i++) {
+                if (errors[i] == null && existingEmails.contains(batch.get(i).email())) {
+                    errors[i] = "Email already registered";
+                }
+            }
+        }
+
+        if (!rows.isEmpty()) {
+            List<String> passwords = hash(rows);
+            try {
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> insert(rows, passwords, roles));
+                rows.forEach(row -> registeredEmailFilter.add(row.email()));
+                result.addImported(rows.size());
+            } catch (DataAccessException e) {
+                logger.warn("Could not save a batch of {} imported users", rows.size(), e);
+                for (int i = 0; i < batch.size(); i++) {
+                    if (errors[i] == null) {
+                        errors[i] = "Could not be saved";
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (errors[i] != null) {
+                result.addError(batch.get(i).line(), batch.get(i).email(), errors[i]);
+            }
+        }
+    }
+
+    private static String validate(UserImportReader.Row row, Map<String, Role> roles, Set<String> seenEmails) {
+        if (row.name() == null || row.name().isBlank()) {
+            return "Name is required";
+        }
+        if (row.email() == null || row.email().isBlank()) {
+            return "Email is required";
+        }
+        if (row.password() == null || row.password().isEmpty()) {
+            return "Password is required";
+        }
+        for (String role : row.roles()) {
+            if (!roles.containsKey(role)) {
+                return "Unknown role " + role;
+            }
+        }
+        if (!seenEmails.add(row.email())) {
+            return "Email appears earlier in this import";
+        }
+        return null;
+    }
+
+    private List<String> hash(List<UserImportReader.Row> rows) {
+        List<Future<String>> hashes = new ArrayList<>(rows.size());
+        for (UserImportReader.Row row : rows) {
+            hashes.add(executor.submit(() -> passwordEncoder.encode(row.password())));
+        }
+        List<String> passwords = new ArrayList<>(rows.size());
+        try {
+            for (Future<String> hash : hashes) {
+                passwords.add(hash.get());
+            }
+        } catch (InterruptedException e) {
+            hashes.forEach(hash -> hash.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing imported passwords", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+        return passwords;
+    }
+
+    private void insert(List<UserImportReader.Row> rows, List<String> passwords, Map<String, Role> roles) {
+        SqlParameterSource[] users = new SqlParameterSource[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            users[i] = new MapSqlParameterSource()
+                    .addValue("name", rows.get(i).name())
+                    .addValue("email", rows.get(i).email())
+                    .addValue("password", passwords.get(i));
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(INSERT_USER_SQL, users, keyHolder, new String[]{"id"});
+
+        List<SqlParameterSource> userRoles = new ArrayList<>();
+        List<SqlParameterSource> trigrams = new ArrayList<>();
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < rows.size(); i++) {
+            Object userId = keys.get(i).values().iterator().next();
+            for (String role : new LinkedHashSet<>(rows.get(i).roles())) {
+                userRoles.add(new MapSqlParameterSource("userId", userId).addValue("roleId", roles.get(role).getId()));
+            }
+            for (String trigram : Trigrams.ofValue(rows.get(i).name())) {
+                trigrams.add(new MapSqlParameterSource("userId", userId).addValue("trigram", trigram));
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_USER_ROLE_SQL, userRoles.toArray(SqlParameterSource[]::new));
+        jdbcTemplate.batchUpdate(INSERT_TRIGRAM_SQL, trigrams.toArray(SqlParameterSource[]::new));
+    }
+}
@@ -0,0 +1,56 @@
+package com.luis.learnplatform.services;
+
+import com.luis.learnplatform.entities.User;
+import com.luis.learnplatform.repositories.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Builds the name trigrams of users inserted without the entity, such as the seed data or
+ * rows that existed before the index, once the application has started.
+ */
+@Component
+public class UserNameIndexer {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserNameIndexer.class);
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private UserRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexUnindexedNames() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long after = 0;
+        int total = 0;
+        List<User> users;
+        do {
+            long from = after;
+            users = transactionTemplate.execute(status -> {
+                List<User> batch = repository.findUnindexedNames(from, Limit.of(BATCH_SIZE));
+                batch.forEach(User::indexName);
+                return batch;
+            });
+            if (!users.isEmpty()) {
+                after = users.get(users.size() - 1).getId();
+                total += users.size();
+            }
+        } while (users.size() == BATCH_SIZE);
+
+        if (total > 0) {
+            logger.info("Indexed the names of {} users", total);
+        }
+    }
+}
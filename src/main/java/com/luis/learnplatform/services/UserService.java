@@ -1,23 +1,32 @@
 package com.luis.learnplatform.services;
 
+import com.luis.learnplatform.entities.DTO.CursorPageDTO;
 import com.luis.learnplatform.entities.DTO.RoleDTO;
 import com.luis.learnplatform.entities.DTO.UserDTO;
 import com.luis.learnplatform.entities.DTO.UserInsertDTO;
+import com.luis.learnplatform.entities.DTO.UserLookupDTO;
+import com.luis.learnplatform.entities.DTO.UserPatchDTO;
 import com.luis.learnplatform.entities.Role;
 import com.luis.learnplatform.entities.User;
 import com.luis.learnplatform.entities.projections.UserDetailsProjection;
+import com.luis.learnplatform.entities.projections.UserVersion;
 import com.luis.learnplatform.repositories.RoleRepository;
 import com.luis.learnplatform.repositories.UserRepository;
 
 import com.luis.learnplatform.services.exceptions.DatabaseException;
 import com.luis.learnplatform.services.exceptions.ForbiddenException;
 import com.luis.learnplatform.services.exceptions.ResourceNotFoundException;
+import com.luis.learnplatform.util.CurrentUser;
 import com.luis.learnplatform.util.CustomUserUtil;
+import com.luis.learnplatform.util.Trigrams;
+import com.luis.learnplatform.util.UserCursor;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -25,10 +34,17 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UserRepository repository;
@@ -38,31 +54,84 @@ public class UserService implements UserDetailsService {
     private PasswordEncoder passwordEncoder;
     @Autowired
     private CustomUserUtil customUserUtil;
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+    @Autowired
+    private RegisteredEmailFilter registeredEmailFilter;
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
 
 
     @Transactional(readOnly = true)
     public Page<UserDTO> findAll(String name, Pageable pageable) {
         Page<User> users;
+        Set<String> trigrams = Trigrams.ofQuery(name);
         if (name == null || name.trim().isEmpty()) {
             users = repository.findAll(pageable);
-        } else {
+        } else if (trigrams.isEmpty()) {
+            // Too short for the trigram index; rare enough to afford the scan
             users = repository.findByNameContainingIgnoreCase(name, pageable);
+        } else {
+            users = repository.searchByName(name, trigrams, trigrams.size(), pageable);
         }
+        fetchRoles(users.getContent());
         return users.map(UserDTO::new);
     }
 
+    @Transactional(readOnly = true)
+    public CursorPageDTO<UserDTO> findAllAfter(String name, String after, int size) {
+        UserCursor cursor = after == null || after.isEmpty() ? UserCursor.START : UserCursor.decode(after);
+        // One row more than requested tells whether there is a next page, without a count query
+        Limit limit = Limit.of(size + 1);
+        List<User> users;
+        if (name == null || name.trim().isEmpty()) {
+            users = repository.findPageAfter(cursor.name(), cursor.id(), limit);
+        } else {
+            users = repository.findPageAfterByNameContaining(name, cursor.name(), cursor.id(), limit);
+        }
+        String next = null;
+        if (users.size() > size) {
+            users = users.subList(0, size);
+            User last = users.get(size - 1);
+            next = new UserCursor(last.getName(), last.getId()).encode();
+        }
+        fetchRoles(users);
+        return new CursorPageDTO<>(users.stream().map(UserDTO::new).toList(), size, next);
+    }
+
     @Transactional(readOnly = true)
     public UserDTO findById(Long id) {
         User user = repository.findById(id).orElseThrow(()->new ResourceNotFoundException());
         return new UserDTO(user);
     }
 
+    /**
+     * Resolves {@code ids} with one query that also fetches the roles. The result follows the
+     * order of {@code ids}, with a not-found entry for each id that matches no user.
+     */
+    @Transactional(readOnly = true)
+    public List<UserLookupDTO> findAllById(List<Long> ids) {
+        validateSelfOrAdmin(ids);
+        Map<Long, User> users = repository.findWithRolesByIdIn(new HashSet<>(ids)).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return ids.stream()
+                .map(id -> users.containsKey(id) ? UserLookupDTO.found(new UserDTO(users.get(id))) : UserLookupDTO.missing(id))
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public UserVersion findVersion(Long id) {
+        return repository.findVersionById(id).orElseThrow(ResourceNotFoundException::new);
+    }
+
     @Transactional
     public UserDTO insert(UserInsertDTO dto) {
         try {
             User user = new User();
             update(user, dto);
             user = repository.save(user);
+            userDetailsCache.evict(dto.getEmail());
+            registeredEmailFilter.add(dto.getEmail());
             return new UserDTO(user);
         }
         catch(EntityNotFoundException e) {
@@ -75,9 +144,60 @@ public class UserService implements UserDetailsService {
         try {
             validateSelfOrAdmin(id);
             User user = repository.getReferenceById(id);
+            userDetailsCache.evict(user.getEmail());
+            String oldPassword = user.getPassword();
             user.getRoles().clear();
             update(user, dto);
             user = repository.save(user);
+            userDetailsCache.evict(dto.getEmail());
+            registeredEmailFilter.add(dto.getEmail());
+            // A new password ends the sessions opened with the old one
+            if (!passwordEncoder.matches(dto.getPassword(), oldPassword)) {
+                tokenRevocationService.revokeUser(id);
+            }
+            return new UserDTO(user);
+        }
+        catch (EntityNotFoundException e) {
+            throw new ResourceNotFoundException();
+        }
+    }
+
+    /**
+     * Applies only the fields present in {@code dto}. A password is hashed only when one is supplied
+     * and roles are changed row by row; only admins may change roles. Updates of tb_user carry only
+     * the changed columns, and a rename also deletes and inserts the name trigrams that differ.
+     */
+    @Transactional
+    public UserDTO patch(Long id, UserPatchDTO dto) {
+        try {
+            CurrentUser current = currentUser();
+            validateSelfOrAdmin(current, Collections.singletonList(id));
+            if (dto.getRoles() != null && !current.hasRole("ROLE_ADMIN")) {
+                throw new ForbiddenException("Only admins can change roles");
+            }
+            User user = repository.findById(id).orElseThrow(() -> new ResourceNotFoundException());
+            String oldEmail = user.getEmail();
+            boolean credentialsChanged = false;
+            if (dto.getName() != null) {
+                user.setName(dto.getName());
+            }
+            if (dto.getEmail() != null && !dto.getEmail().equals(oldEmail)) {
+                user.setEmail(dto.getEmail());
+                userDetailsCache.evict(dto.getEmail());
+                registeredEmailFilter.add(dto.getEmail());
+                credentialsChanged = true;
+            }
+            if (dto.getPassword() != null) {
+                user.setPassword(passwordEncoder.encode(dto.getPassword()));
+                tokenRevocationService.revokeUser(id);
+                credentialsChanged = true;
+            }
+            if (dto.getRoles() != null) {
+                credentialsChanged |= updateRoles(user, dto.getRoles());
+            }
+            if (credentialsChanged) {
+                userDetailsCache.evict(oldEmail);
+            }
             return new UserDTO(user);
         }
         catch (EntityNotFoundException e) {
@@ -92,7 +212,9 @@ public class UserService implements UserDetailsService {
         }
         User user = repository.getReferenceById(id);
         if(user.getEnrollments().isEmpty()){
+            userDetailsCache.evict(user.getEmail());
             repository.deleteById(id);
+            tokenRevocationService.revokeUser(id);
         }
         else{
             throw new DatabaseException("Could not execute statement");
@@ -109,13 +231,38 @@ public class UserService implements UserDetailsService {
         }
     }
 
+    // Removes and adds only the roles that differ, instead of rewriting every tb_user_role row
+    private boolean updateRoles(User user, Set<RoleDTO> roles) {
+        Set<Long> roleIds = roles.stream().map(RoleDTO::getId).collect(Collectors.toSet());
+        boolean changed = user.getRoles().removeIf(role -> !roleIds.contains(role.getId()));
+        Set<Long> currentIds = user.getRoles().stream().map(Role::getId).collect(Collectors.toSet());
+        for (Long roleId : roleIds) {
+            if (!currentIds.contains(roleId)) {
+                user.getRoles().add(roleRepository.getReferenceById(roleId));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // UserDTO walks the roles; without this each user of a page would load them with its own query
+    private void fetchRoles(List<User> users) {
+        if (!users.isEmpty()) {
+            repository.findWithRolesByIdIn(users.stream().map(User::getId).toList());
+        }
+    }
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        List<UserDetailsProjection> result = repository.searchUserAndRolesByEmail(username);
+        if (!registeredEmailFilter.mightBeRegistered(username)) {
+            throw new UsernameNotFoundException("User not found");
+        }
+        List<UserDetailsProjection> result = userDetailsCache.get(username, repository::searchUserAndRolesByEmail);
         if (result.isEmpty()) {
             throw new UsernameNotFoundException("User not found");
         }
         User user = new User();
+        user.setId(result.get(0).getUserId());
         user.setEmail(username);
         user.setPassword(result.get(0).getPassword());
         for (UserDetailsProjection projection : result) {
@@ -124,6 +271,20 @@ public class UserService implements UserDetailsService {
         return user;
     }
 
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        // Only replaces the hash that was just verified, so a password changed meanwhile is kept
+        if (repository.updatePassword(user.getUsername(), user.getPassword(), newPassword) == 0) {
+            return user;
+        }
+        userDetailsCache.evict(user.getUsername());
+        if (user instanceof User entity) {
+            entity.setPassword(newPassword);
+        }
+        return user;
+    }
+
     protected User authenticated() {
         try {
             String username = customUserUtil.getLoggedUser();
@@ -135,17 +296,58 @@ public class UserService implements UserDetailsService {
 
     @Transactional(readOnly = true)
     public UserDTO getMe() {
-        User user = authenticated();
+        CurrentUser current = customUserUtil.getCurrentUser();
+        if (current == null) {
+            return new UserDTO(authenticated());
+        }
+        User user = repository.findById(current.id()).orElseThrow(() -> new UsernameNotFoundException("Email not found"));
         return new UserDTO(user);
     }
 
+    @Transactional(readOnly = true)
+    public UserVersion getMyVersion() {
+        CurrentUser current = customUserUtil.getCurrentUser();
+        if (current == null) {
+            try {
+                String username = customUserUtil.getLoggedUser();
+                return repository.findVersionByEmail(username).get();
+            } catch (Exception e) {
+                throw new UsernameNotFoundException("Email not found");
+            }
+        }
+        return repository.findVersionById(current.id()).orElseThrow(() -> new UsernameNotFoundException("Email not found"));
+    }
+
     public void validateSelfOrAdmin(Long userId) {
-        User me = authenticated();
-        if (me.hasRole("ROLE_ADMIN")) {
+        validateSelfOrAdmin(Collections.singletonList(userId));
+    }
+
+    /**
+     * Passes for admins and for users whose own id is the only one in {@code userIds}.
+     */
+    public void validateSelfOrAdmin(Collection<Long> userIds) {
+        validateSelfOrAdmin(currentUser(), userIds);
+    }
+
+    private CurrentUser currentUser() {
+        // Decided from the token claims; only older tokens without user_id need the user query
+        CurrentUser current = customUserUtil.getCurrentUser();
+        if (current == null) {
+            User me = authenticated();
+            current = new CurrentUser(me.getId(), me.getEmail(),
+                    me.getRoles().stream().map(Role::getAuthority).toList());
+        }
+        return current;
+    }
+
+    private static void validateSelfOrAdmin(CurrentUser current, Collection<Long> userIds) {
+        if (current.hasRole("ROLE_ADMIN")) {
             return;
         }
-        if (!me.getId().equals(userId)) {
-            throw new ForbiddenException("You do not have permission to access this resource");
+        for (Long userId : userIds) {
+            if (!current.id().equals(userId)) {
+                throw new ForbiddenException("You do not have permission to access this resource");
+            }
         }
     }
 
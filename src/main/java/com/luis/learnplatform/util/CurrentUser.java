@@ -0,0 +1,15 @@
+package com.luis.learnplatform.util;
+
+import java.util.List;
+
+/**
+ * The authenticated user as described by the access token, available without loading the
+ * {@link com.luis.learnplatform.entities.User} entity. {@code email} is {@code null} for
+ * tokens issued with the compact profile.
+ */
+public record CurrentUser(Long id, String email, List<String> authorities) {
+
+    public boolean hasRole(String roleName) {
+        return authorities.contains(roleName);
+    }
+}
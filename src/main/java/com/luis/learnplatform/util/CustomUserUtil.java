@@ -2,11 +2,13 @@ package com.luis.learnplatform.util;
 
 
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
 import java.text.ParseException;
+import java.util.List;
 
 @Component
 public class CustomUserUtil {
@@ -16,4 +18,22 @@ public class CustomUserUtil {
         Jwt jwtPrincipal = (Jwt) authentication.getPrincipal();
         return jwtPrincipal.getClaim("username");
     }
+
+    /**
+     * The user of the current request, read from the token claims. Returns {@code null} when the
+     * token carries no {@code user_id}, e.g. tokens issued before the claim was added.
+     */
+    public CurrentUser getCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof Jwt jwtPrincipal)) {
+            return null;
+        }
+        Object userId = jwtPrincipal.getClaim("user_id");
+        if (!(userId instanceof Number)) {
+            return null;
+        }
+        // Taken from the authentication so that both the "authorities" list and the compact "roles" mask work
+        List<String> authorities = authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+        return new CurrentUser(((Number) userId).longValue(), jwtPrincipal.getClaimAsString("username"), authorities);
+    }
 }
@@ -0,0 +1,125 @@
+package com.luis.learnplatform.util;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set of strings kept as 128-bit fingerprints in an open-addressing table of longs instead of
+ * a string and a map node. Each 16-byte slot is kept between 25 % and 50 % full, so a value
+ * takes 32 to 64 bytes, 64 right after the table doubles. Two values share a fingerprint
+ * with negligible probability, so {@link #contains} can be treated as exact.
+ *
+ * <p>Lookups are lock-free; additions are serialized. Values cannot be removed, callers drop
+ * the whole set instead.
+ */
+public class FingerprintSet {
+
+    private volatile AtomicLongArray table;
+    private volatile int size;
+
+    public FingerprintSet(int initialCapacity) {
+        Assert.isTrue(initialCapacity > 0, "initialCapacity must be greater than 0");
+        this.table = new AtomicLongArray(2 * tableSlots(initialCapacity));
+    }
+
+    public synchronized boolean add(String value) {
+        long high = high(value);
+        long low = low(value);
+        AtomicLongArray current = table;
+        if (2 * (size + 1) > current.length() / 2) {
+            current = resize(current);
+        }
+        if (!insert(current, high, low)) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    public boolean contains(String value) {
+        long high = high(value);
+        long low = low(value);
+        AtomicLongArray current = table;
+        int mask = current.length() / 2 - 1;
+        for (int slot = (int) high & mask; ; slot = (slot + 1) & mask) {
+            long slotHigh = current.get(2 * slot);
+            long slotLow = current.get(2 * slot + 1);
+            if (slotHigh == high && slotLow == low) {
+                return true;
+            }
+            if (slotHigh == 0 && slotLow == 0) {
+                return false;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // The low word is written first, so a concurrent reader sees either an empty slot or a non-matching one
+    private static boolean insert(AtomicLongArray table, long high, long low) {
+        int mask = table.length() / 2 - 1;
+        for (int slot = (int) high & mask; ; slot = (slot + 1) & mask) {
+            long slotHigh = table.get(2 * slot);
+            long slotLow = table.get(2 * slot + 1);
+            if (slotHigh == high && slotLow == low) {
+                return false;
+            }
+            if (slotHigh == 0 && slotLow == 0) {
+                table.set(2 * slot + 1, low);
+                table.set(2 * slot, high);
+                return true;
+            }
+        }
+    }
+
+    private AtomicLongArray resize(AtomicLongArray current) {
+        AtomicLongArray resized = new AtomicLongArray(2 * current.length());
+        for (int i = 0; i < current.length(); i += 2) {
+            long high = current.get(i);
+            long low = current.get(i + 1);
+            if (high != 0 || low != 0) {
+                insert(resized, high, low);
+            }
+        }
+        table = resized;
+        return resized;
+    }
+
+    private static int tableSlots(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) * 2;
+        return Math.max(16, slots);
+    }
+
+    // 64-bit FNV-1a over the chars, spread with the MurmurHash3 finalizer
+    private static long high(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // Independent of high(): multiplicative hash with a different constant and a length seed
+    private static long low(String value) {
+        long hash = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash + value.charAt(i)) * 0x9e3779b97f4a7c15L;
+        }
+        hash = mix(hash);
+        // (0, 0) marks an empty slot
+        return hash != 0 ? hash : 1;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,44 @@
+package com.luis.learnplatform.util;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Case-insensitive trigrams, the three-character substrings of a value. Any substring of at
+ * least three characters has all its trigrams in the value's set, so an index of trigrams
+ * narrows a substring search down to a few candidates before the exact check.
+ */
+public final class Trigrams {
+
+    public static final int LENGTH = 3;
+
+    private Trigrams() {
+    }
+
+    /**
+     * Trigrams of a stored value, padded like PostgreSQL's pg_trgm so that short values still get one.
+     */
+    public static Set<String> ofValue(String value) {
+        if (value == null || value.isEmpty()) {
+            return Set.of();
+        }
+        return of("  " + value + " ");
+    }
+
+    /**
+     * Trigrams every value containing {@code query} has; empty when the query is too short to narrow anything.
+     */
+    public static Set<String> ofQuery(String query) {
+        return query == null ? Set.of() : of(query);
+    }
+
+    private static Set<String> of(String value) {
+        int[] codePoints = value.toLowerCase(Locale.ROOT).codePoints().toArray();
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + LENGTH <= codePoints.length; i++) {
+            trigrams.add(new String(codePoints, i, LENGTH));
+        }
+        return trigrams;
+    }
+}
@@ -0,0 +1,33 @@
+package com.luis.learnplatform.util;
+
+import com.luis.learnplatform.services.exceptions.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in the users list ordered by {@code (name, id)}: the last row of the previous page.
+ * Clients get it as an opaque URL-safe token and send it back unchanged.
+ */
+public record UserCursor(String name, Long id) {
+
+    /**
+     * Sorts before every user, for the first page.
+     */
+    public static final UserCursor START = new UserCursor("", 0L);
+
+    public String encode() {
+        String value = id + ":" + name;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static UserCursor decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.indexOf(':');
+            return new UserCursor(value.substring(separator + 1), Long.parseLong(value.substring(0, separator)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidRequestException("Invalid cursor");
+        }
+    }
+}
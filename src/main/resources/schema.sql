@@ -0,0 +1,67 @@
+CREATE TABLE IF NOT EXISTS oauth2_authorization (
+    id varchar(100) NOT NULL,
+    registered_client_id varchar(100) NOT NULL,
+    principal_name varchar(200) NOT NULL,
+    authorization_grant_type varchar(100) NOT NULL,
+    authorized_scopes varchar(1000) DEFAULT NULL,
+    attributes blob DEFAULT NULL,
+    state varchar(500) DEFAULT NULL,
+    authorization_code_value varchar(4000) DEFAULT NULL,
+    authorization_code_issued_at timestamp DEFAULT NULL,
+    authorization_code_expires_at timestamp DEFAULT NULL,
+    authorization_code_metadata blob DEFAULT NULL,
+    access_token_value varchar(4000) DEFAULT NULL,
+    access_token_issued_at timestamp DEFAULT NULL,
+    access_token_expires_at timestamp DEFAULT NULL,
+    access_token_metadata blob DEFAULT NULL,
+    access_token_type varchar(100) DEFAULT NULL,
+    access_token_scopes varchar(1000) DEFAULT NULL,
+    oidc_id_token_value varchar(4000) DEFAULT NULL,
+    oidc_id_token_issued_at timestamp DEFAULT NULL,
+    oidc_id_token_expires_at timestamp DEFAULT NULL,
+    oidc_id_token_metadata blob DEFAULT NULL,
+    refresh_token_value varchar(4000) DEFAULT NULL,
+    refresh_token_issued_at timestamp DEFAULT NULL,
+    refresh_token_expires_at timestamp DEFAULT NULL,
+    refresh_token_metadata blob DEFAULT NULL,
+    user_code_value varchar(4000) DEFAULT NULL,
+    user_code_issued_at timestamp DEFAULT NULL,
+    user_code_expires_at timestamp DEFAULT NULL,
+    user_code_metadata blob DEFAULT NULL,
+    device_code_value varchar(4000) DEFAULT NULL,
+    device_code_issued_at timestamp DEFAULT NULL,
+    device_code_expires_at timestamp DEFAULT NULL,
+    device_code_metadata blob DEFAULT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_access_token ON oauth2_authorization (access_token_value);
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_refresh_token ON oauth2_authorization (refresh_token_value);
+CREATE INDEX IF NOT EXISTS idx_oauth2_authorization_expires_at ON oauth2_authorization (access_token_expires_at);
+
+CREATE TABLE IF NOT EXISTS oauth2_jwk (
+    id varchar(100) NOT NULL,
+    jwk varchar(8000) NOT NULL,
+    created_at timestamp NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS token_revocation (
+    id bigint GENERATED BY DEFAULT AS IDENTITY,
+    token_id varchar(200) DEFAULT NULL,
+    user_id bigint DEFAULT NULL,
+    revoked_at timestamp NOT NULL,
+    expires_at timestamp NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_token_revocation_expires_at ON token_revocation (expires_at);
+
+CREATE TABLE IF NOT EXISTS user_details_eviction (
+    id bigint GENERATED BY DEFAULT AS IDENTITY,
+    email varchar(200) NOT NULL,
+    expires_at timestamp NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_user_details_eviction_expires_at ON user_details_eviction (expires_at);
@@ -0,0 +1,113 @@
+package com.luis.learnplatform.config.access;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+import java.util.List;
+
+public class RoleAuthorizationManagerTests {
+
+    private final RoleAuthorizationManager manager = new RoleAuthorizationManager();
+    private final Controller controller = new Controller();
+
+    @Test
+    public void requiresRoleShouldGrantOnlyWhenUserHasRole() throws Exception {
+        Assertions.assertTrue(check(token(1L, "ROLE_ADMIN"), "delete", 2L).isGranted());
+        Assertions.assertFalse(check(token(1L, "ROLE_STUDENT"), "delete", 2L).isGranted());
+    }
+
+    @Test
+    public void requiresRoleShouldAcceptRolesWithoutPrefixAndOnType() throws Exception {
+        Assertions.assertTrue(check(token(1L, "ROLE_INSTRUCTOR"), "publish", 2L).isGranted());
+        Assertions.assertTrue(check(token(1L, "ROLE_ADMIN"), "publish", 2L).isGranted());
+        Assertions.assertFalse(check(token(1L, "ROLE_STUDENT"), "publish", 2L).isGranted());
+        Assertions.assertTrue(check(token(1L, "ROLE_INSTRUCTOR"), "list", 2L).isGranted());
+        Assertions.assertFalse(check(token(1L, "ROLE_STUDENT"), "list", 2L).isGranted());
+    }
+
+    @Test
+    public void selfOrAdminShouldGrantSelfAndAdminOnly() throws Exception {
+        Assertions.assertTrue(check(token(2L, "ROLE_STUDENT"), "update", 2L).isGranted());
+        Assertions.assertFalse(check(token(3L, "ROLE_STUDENT"), "update", 2L).isGranted());
+        Assertions.assertTrue(check(token(3L, "ROLE_ADMIN"), "update", 2L).isGranted());
+    }
+
+    @Test
+    public void selfOrAdminShouldGrantCollectionOnlyWhenEveryIdIsSelf() throws Exception {
+        Assertions.assertTrue(checkIds(token(2L, "ROLE_STUDENT"), List.of(2L, 2L)).isGranted());
+        Assertions.assertFalse(checkIds(token(2L, "ROLE_STUDENT"), List.of(2L, 3L)).isGranted());
+        Assertions.assertTrue(checkIds(token(3L, "ROLE_ADMIN"), List.of(1L, 2L)).isGranted());
+    }
+
+    @Test
+    public void selfOrAdminShouldAbstainWhenTokenHasNoUserId() throws Exception {
+        Assertions.assertNull(check(token(null, "ROLE_STUDENT"), "update", 2L));
+    }
+
+    @Test
+    public void authorizeShouldDenyAnonymousUser() throws Exception {
+        Authentication anonymous = new AnonymousAuthenticationToken("key", "anonymousUser",
+                AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS"));
+
+        Assertions.assertFalse(check(anonymous, "update", 2L).isGranted());
+        Assertions.assertFalse(check(anonymous, "delete", 2L).isGranted());
+        Assertions.assertFalse(check(null, "delete", 2L).isGranted());
+    }
+
+    @Test
+    public void authorizeShouldReturnSameDecisionInstanceOnEveryCall() throws Exception {
+        Authentication admin = token(1L, "ROLE_ADMIN");
+
+        Assertions.assertSame(check(admin, "delete", 2L), check(admin, "delete", 3L));
+    }
+
+    private AuthorizationDecision check(Authentication authentication, String methodName, Long id) throws Exception {
+        SimpleMethodInvocation invocation = new SimpleMethodInvocation(controller,
+                Controller.class.getMethod(methodName, Long.class), id);
+        return manager.authorize(() -> authentication, invocation);
+    }
+
+    private AuthorizationDecision checkIds(Authentication authentication, List<Long> ids) throws Exception {
+        SimpleMethodInvocation invocation = new SimpleMethodInvocation(controller,
+                Controller.class.getMethod("lookup", List.class), ids);
+        return manager.authorize(() -> authentication, invocation);
+    }
+
+    private static Authentication token(Long userId, String... authorities) {
+        Jwt.Builder jwt = Jwt.withTokenValue("token").header("alg", "RS256").claim("username", "alex@gmail.com");
+        if (userId != null) {
+            jwt.claim("user_id", userId);
+        }
+        return new JwtAuthenticationToken(jwt.build(), AuthorityUtils.createAuthorityList(authorities));
+    }
+
+    @RequiresRole({"INSTRUCTOR", "ADMIN"})
+    public static class Controller {
+
+        @SelfOrAdmin("id")
+        public void update(Long id) {
+        }
+
+        @SelfOrAdmin("ids")
+        public void lookup(List<Long> ids) {
+        }
+
+        @RequiresRole("ROLE_ADMIN")
+        public void delete(Long id) {
+        }
+
+        @RequiresRole({"INSTRUCTOR", "ROLE_ADMIN"})
+        public void publish(Long id) {
+        }
+
+        public void list(Long id) {
+        }
+    }
+}
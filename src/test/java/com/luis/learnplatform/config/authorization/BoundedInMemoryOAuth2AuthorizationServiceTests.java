@@ -0,0 +1,80 @@
+package com.luis.learnplatform.config.authorization;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.time.Duration;
+import java.time.Instant;
+
+public class BoundedInMemoryOAuth2AuthorizationServiceTests {
+
+    private RegisteredClient registeredClient;
+    private Instant now;
+
+    @BeforeEach
+    void setUp() {
+        registeredClient = RegisteredClient.withId("myclientid")
+                .clientId("myclientid")
+                .clientSecret("myclientsecret")
+                .authorizationGrantType(new AuthorizationGrantType("password"))
+                .build();
+        now = Instant.now();
+    }
+
+    @Test
+    public void saveShouldEvictOldestAuthorizationWhenMaxSizeIsReached() {
+        BoundedInMemoryOAuth2AuthorizationService service = new BoundedInMemoryOAuth2AuthorizationService(2);
+
+        service.save(authorization("1", now.plusSeconds(60)));
+        service.save(authorization("2", now.plusSeconds(60)));
+        service.save(authorization("3", now.plusSeconds(60)));
+
+        Assertions.assertEquals(2, service.size());
+        Assertions.assertNull(service.findById("1"));
+        Assertions.assertNull(service.findByToken("token-1", OAuth2TokenType.ACCESS_TOKEN));
+        Assertions.assertNotNull(service.findByToken("token-3", OAuth2TokenType.ACCESS_TOKEN));
+    }
+
+    @Test
+    public void findByTokenShouldReturnNullWhenTokenTypeDoesNotMatch() {
+        BoundedInMemoryOAuth2AuthorizationService service = new BoundedInMemoryOAuth2AuthorizationService(2);
+        service.save(authorization("1", now.plusSeconds(60)));
+
+        Assertions.assertNotNull(service.findByToken("token-1", null));
+        Assertions.assertNull(service.findByToken("token-1", OAuth2TokenType.REFRESH_TOKEN));
+    }
+
+    @Test
+    public void removeExpiredShouldRemoveOnlyExpiredAuthorizationsUpToBatchSize() {
+        BoundedInMemoryOAuth2AuthorizationService service = new BoundedInMemoryOAuth2AuthorizationService(10);
+        service.save(authorization("1", now.minusSeconds(60)));
+        service.save(authorization("2", now.plusSeconds(60)));
+        service.save(authorization("3", now.minusSeconds(60)));
+        service.save(authorization("4", now.minusSeconds(60)));
+
+        Assertions.assertEquals(2, service.removeExpired(now, 2));
+        Assertions.assertEquals(1, service.removeExpired(now, 2));
+        Assertions.assertEquals(0, service.removeExpired(now, 2));
+
+        Assertions.assertEquals(1, service.size());
+        Assertions.assertNotNull(service.findByToken("token-2", OAuth2TokenType.ACCESS_TOKEN));
+        Assertions.assertNull(service.findByToken("token-4", OAuth2TokenType.ACCESS_TOKEN));
+    }
+
+    private OAuth2Authorization authorization(String id, Instant expiresAt) {
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "token-" + id,
+                expiresAt.minus(Duration.ofMinutes(5)), expiresAt);
+        return OAuth2Authorization.withRegisteredClient(registeredClient)
+                .id(id)
+                .principalName("alex@gmail.com")
+                .authorizationGrantType(new AuthorizationGrantType("password"))
+                .accessToken(accessToken)
+                .build();
+    }
+}
@@ -0,0 +1,70 @@
+package com.luis.learnplatform.config.customgrant;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachingClientSecretPasswordEncoderTests {
+
+    private CountingPasswordEncoder delegate;
+    private CachingClientSecretPasswordEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new CountingPasswordEncoder();
+        encoder = new CachingClientSecretPasswordEncoder(delegate, 10, Duration.ofMinutes(5));
+    }
+
+    @Test
+    public void matchesShouldVerifyCorrectSecretOnlyOnceWhenRepeated() {
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(encoder.matches("myclientsecret", "{hash}myclientsecret"));
+        }
+
+        Assertions.assertEquals(1, delegate.checks.get());
+    }
+
+    @Test
+    public void matchesShouldAlwaysVerifyWrongSecret() {
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertFalse(encoder.matches("wrongsecret", "{hash}myclientsecret"));
+        }
+
+        Assertions.assertEquals(5, delegate.checks.get());
+    }
+
+    @Test
+    public void matchesShouldNotReuseVerificationWhenStoredSecretChanges() {
+        Assertions.assertTrue(encoder.matches("myclientsecret", "{hash}myclientsecret"));
+
+        Assertions.assertFalse(encoder.matches("myclientsecret", "{hash}newclientsecret"));
+        Assertions.assertEquals(2, delegate.checks.get());
+    }
+
+    @Test
+    public void matchesShouldNotAcceptWrongSecretAfterCorrectOneWasCached() {
+        Assertions.assertTrue(encoder.matches("myclientsecret", "{hash}myclientsecret"));
+
+        Assertions.assertFalse(encoder.matches("myclientsecret ", "{hash}myclientsecret"));
+    }
+
+    private static class CountingPasswordEncoder implements PasswordEncoder {
+
+        private final AtomicInteger checks = new AtomicInteger();
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return "{hash}" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            checks.incrementAndGet();
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+}
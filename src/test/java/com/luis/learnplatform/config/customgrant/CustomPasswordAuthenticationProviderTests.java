@@ -0,0 +1,233 @@
+package com.luis.learnplatform.config.customgrant;
+
+import com.luis.learnplatform.config.AuthorizationServerConfig;
+import com.luis.learnplatform.config.jwk.Jwks;
+import com.luis.learnplatform.config.jwt.RoleAuthorityRegistry;
+import com.luis.learnplatform.entities.Role;
+import com.luis.learnplatform.entities.User;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.server.authorization.InMemoryOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AccessTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContext;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContextHolder;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat;
+import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
+import org.springframework.security.oauth2.server.authorization.token.DelegatingOAuth2TokenGenerator;
+import org.springframework.security.oauth2.server.authorization.token.JwtGenerator;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2AccessTokenGenerator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class CustomPasswordAuthenticationProviderTests {
+
+    private static final int USERS = 2000;
+    private static final int THREADS = 32;
+
+    private AuthorizationServerConfig config;
+    private CustomPasswordAuthenticationProvider provider;
+    private RegisteredClient registeredClient;
+    private JwtDecoder jwtDecoder;
+    private AuthorizationServerContext authorizationServerContext;
+    private PasswordVerifier passwordVerifier;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        config = new AuthorizationServerConfig();
+        ReflectionTestUtils.setField(config, "jwtSigningAlgorithm", "RS256");
+        JWKSource<SecurityContext> jwkSource = new ImmutableJWKSet<>(new JWKSet(Jwks.generate(SignatureAlgorithm.RS256)));
+
+        JwtGenerator jwtGenerator = new JwtGenerator(new NimbusJwtEncoder(jwkSource));
+        jwtGenerator.setJwtCustomizer(config.tokenCustomizer());
+        DelegatingOAuth2TokenGenerator tokenGenerator = new DelegatingOAuth2TokenGenerator(jwtGenerator, new OAuth2AccessTokenGenerator());
+
+        registeredClient = RegisteredClient.withId("client")
+                .clientId("myclientid")
+                .clientSecret("myclientsecret")
+                .scope("read")
+                .scope("write")
+                .authorizationGrantType(new AuthorizationGrantType("password"))
+                .tokenSettings(TokenSettings.builder()
+                        .accessTokenFormat(OAuth2TokenFormat.SELF_CONTAINED)
+                        .accessTokenTimeToLive(Duration.ofHours(1))
+                        .build())
+                .build();
+
+        passwordVerifier = new PasswordVerifier(NoOpPasswordEncoder.getInstance(), THREADS, USERS,
+                Duration.ofSeconds(30), new SimpleMeterRegistry());
+        provider = new CustomPasswordAuthenticationProvider(new InMemoryOAuth2AuthorizationService(), tokenGenerator,
+                new SyntheticUserDetailsService(), passwordVerifier);
+        jwtDecoder = OAuth2AuthorizationServerConfiguration.jwtDecoder(jwkSource);
+
+        AuthorizationServerSettings settings = AuthorizationServerSettings.builder().build();
+        authorizationServerContext = new AuthorizationServerContext() {
+            @Override
+            public String getIssuer() {
+                return "http://localhost:8080";
+            }
+
+            @Override
+            public AuthorizationServerSettings getAuthorizationServerSettings() {
+                return settings;
+            }
+        };
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        passwordVerifier.shutdown();
+    }
+
+    @Test
+    public void authenticateShouldIssueTokenWithOwnClaimsWhenCalledConcurrentlyForDifferentUsers() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Jwt>> results = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            String email = email(i);
+            results.add(executor.submit(() -> {
+                start.await();
+                return authenticate(email, password(email));
+            }));
+        }
+        start.countDown();
+
+        for (int i = 0; i < USERS; i++) {
+            Jwt jwt = results.get(i).get(60, TimeUnit.SECONDS);
+            Assertions.assertEquals(email(i), jwt.getClaimAsString("username"));
+            Assertions.assertEquals(i + 1L, ((Number) jwt.getClaim("user_id")).longValue());
+            Assertions.assertEquals(expectedAuthorities(i), new HashSet<>(jwt.getClaimAsStringList("authorities")));
+        }
+    }
+
+    @Test
+    public void authenticateShouldRejectOnlyWrongPasswordsWhenMixedWithValidRequestsConcurrently() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            String email = email(i);
+            boolean valid = i % 2 == 0;
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    Jwt jwt = authenticate(email, valid ? password(email) : "wrong");
+                    return email.equals(jwt.getClaimAsString("username"));
+                } catch (OAuth2AuthenticationException e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+
+        for (int i = 0; i < USERS; i++) {
+            Assertions.assertEquals(i % 2 == 0, results.get(i).get(60, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void authenticateShouldRejectCorrectPasswordOnceEmailHasReachedFailureLimit() {
+        provider.setLoginAttemptThrottle(new LoginAttemptThrottle(3, 100, Duration.ofMinutes(15), 1000,
+                new SimpleMeterRegistry()));
+        String email = email(1);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertThrows(OAuth2AuthenticationException.class, () -> authenticate(email, "wrong"));
+        }
+
+        Assertions.assertThrows(TooManyLoginAttemptsException.class, () -> authenticate(email, password(email)));
+        Assertions.assertEquals(email(2), authenticate(email(2), password(email(2))).getClaimAsString("username"));
+    }
+
+    @Test
+    public void authenticateShouldIssueRolesMaskInsteadOfNamesWhenProfileIsCompact() {
+        ReflectionTestUtils.setField(config, "jwtTokenProfile", "compact");
+        ReflectionTestUtils.setField(config, "roleAuthorityRegistry", new RoleAuthorityRegistry(List.of(
+                new Role(1L, "ROLE_STUDENT"), new Role(2L, "ROLE_INSTRUCTOR"), new Role(3L, "ROLE_ADMIN"))));
+
+        Jwt jwt = authenticate(email(1), password(email(1)));
+
+        Assertions.assertEquals(3L, ((Number) jwt.getClaim("roles")).longValue());
+        Assertions.assertEquals(2L, ((Number) jwt.getClaim("user_id")).longValue());
+        Assertions.assertNull(jwt.getClaim("authorities"));
+        Assertions.assertNull(jwt.getClaim("username"));
+    }
+
+    private Jwt authenticate(String username, String password) {
+        AuthorizationServerContextHolder.setContext(authorizationServerContext);
+        try {
+            OAuth2ClientAuthenticationToken clientPrincipal = new OAuth2ClientAuthenticationToken(
+                    registeredClient, ClientAuthenticationMethod.CLIENT_SECRET_BASIC, null);
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put("username", username);
+            parameters.put("password", password);
+            CustomPasswordAuthenticationToken authentication = new CustomPasswordAuthenticationToken(clientPrincipal, null, parameters);
+
+            OAuth2AccessTokenAuthenticationToken result = (OAuth2AccessTokenAuthenticationToken) provider.authenticate(authentication);
+            return jwtDecoder.decode(result.getAccessToken().getTokenValue());
+        } finally {
+            AuthorizationServerContextHolder.resetContext();
+        }
+    }
+
+    private static String email(int i) {
+        return "user" + i + "@learnplatform.com";
+    }
+
+    private static String password(String email) {
+        return "secret-" + email;
+    }
+
+    private static Set<String> expectedAuthorities(int i) {
+        Set<String> authorities = new HashSet<>();
+        authorities.add("ROLE_STUDENT");
+        if (i % 3 >= 1) {
+            authorities.add("ROLE_INSTRUCTOR");
+        }
+        if (i % 3 == 2) {
+            authorities.add("ROLE_ADMIN");
+        }
+        return authorities;
+    }
+
+    private static class SyntheticUserDetailsService implements UserDetailsService {
+
+        @Override
+        public User loadUserByUsername(String username) throws UsernameNotFoundException {
+            int i = Integer.parseInt(username.substring(4, username.indexOf('@')));
+            User user = new User((long) i + 1, "User " + i, username, password(username));
+            long roleId = 1;
+            for (String authority : List.of("ROLE_STUDENT", "ROLE_INSTRUCTOR", "ROLE_ADMIN")) {
+                if (expectedAuthorities(i).contains(authority)) {
+                    user.getRoles().add(new Role(roleId, authority));
+                }
+                roleId++;
+            }
+            return user;
+        }
+    }
+}
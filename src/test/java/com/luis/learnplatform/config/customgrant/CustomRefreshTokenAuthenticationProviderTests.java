@@ -0,0 +1,242 @@
+package com.luis.learnplatform.config.customgrant;
+
+import com.luis.learnplatform.config.AuthorizationServerConfig;
+import com.luis.learnplatform.config.jwk.Jwks;
+import com.luis.learnplatform.entities.Role;
+import com.luis.learnplatform.entities.User;
+import com.luis.learnplatform.services.TokenRevocationService;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.server.authorization.InMemoryOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AccessTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2RefreshTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContext;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContextHolder;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat;
+import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
+import org.springframework.security.oauth2.server.authorization.token.DelegatingOAuth2TokenGenerator;
+import org.springframework.security.oauth2.server.authorization.token.JwtGenerator;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2AccessTokenGenerator;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2RefreshTokenGenerator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CustomRefreshTokenAuthenticationProviderTests {
+
+    private static final String EMAIL = "alex@gmail.com";
+    private static final String PASSWORD = "123456";
+
+    private CustomPasswordAuthenticationProvider passwordProvider;
+    private CustomRefreshTokenAuthenticationProvider refreshProvider;
+    private RegisteredClient registeredClient;
+    private JwtDecoder jwtDecoder;
+    private AuthorizationServerContext authorizationServerContext;
+    private PasswordVerifier passwordVerifier;
+    private Map<String, User> users;
+    private AtomicInteger passwordChecks;
+
+    @BeforeEach
+    void setUp() {
+        AuthorizationServerConfig config = new AuthorizationServerConfig();
+        ReflectionTestUtils.setField(config, "jwtSigningAlgorithm", "RS256");
+        JWKSource<SecurityContext> jwkSource = new ImmutableJWKSet<>(new JWKSet(Jwks.generate(SignatureAlgorithm.RS256)));
+
+        JwtGenerator jwtGenerator = new JwtGenerator(new NimbusJwtEncoder(jwkSource));
+        jwtGenerator.setJwtCustomizer(config.tokenCustomizer());
+        DelegatingOAuth2TokenGenerator tokenGenerator = new DelegatingOAuth2TokenGenerator(jwtGenerator,
+                new OAuth2AccessTokenGenerator(), new OAuth2RefreshTokenGenerator());
+
+        registeredClient = RegisteredClient.withId("client")
+                .clientId("myclientid")
+                .clientSecret("myclientsecret")
+                .scope("read")
+                .scope("write")
+                .authorizationGrantType(new AuthorizationGrantType("password"))
+                .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+                .tokenSettings(TokenSettings.builder()
+                        .accessTokenFormat(OAuth2TokenFormat.SELF_CONTAINED)
+                        .accessTokenTimeToLive(Duration.ofMinutes(5))
+                        .refreshTokenTimeToLive(Duration.ofDays(30))
+                        .reuseRefreshTokens(false)
+                        .build())
+                .build();
+
+        users = new ConcurrentHashMap<>();
+        User user = new User(1L, "Alex Brown", EMAIL, PASSWORD);
+        user.getRoles().add(new Role(1L, "ROLE_STUDENT"));
+        users.put(EMAIL, user);
+
+        passwordChecks = new AtomicInteger();
+        PasswordEncoder countingEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                passwordChecks.incrementAndGet();
+                return NoOpPasswordEncoder.getInstance().matches(rawPassword, encodedPassword);
+            }
+        };
+        passwordVerifier = new PasswordVerifier(countingEncoder, 2, 10, Duration.ofSeconds(30), new SimpleMeterRegistry());
+
+        OAuth2AuthorizationService authorizationService = new InMemoryOAuth2AuthorizationService();
+        passwordProvider = new CustomPasswordAuthenticationProvider(authorizationService, tokenGenerator,
+                this::loadUser, passwordVerifier);
+        refreshProvider = new CustomRefreshTokenAuthenticationProvider(authorizationService, tokenGenerator, this::loadUser);
+        jwtDecoder = OAuth2AuthorizationServerConfiguration.jwtDecoder(jwkSource);
+
+        AuthorizationServerSettings settings = AuthorizationServerSettings.builder().build();
+        authorizationServerContext = new AuthorizationServerContext() {
+            @Override
+            public String getIssuer() {
+                return "http://localhost:8080";
+            }
+
+            @Override
+            public AuthorizationServerSettings getAuthorizationServerSettings() {
+                return settings;
+            }
+        };
+        AuthorizationServerContextHolder.setContext(authorizationServerContext);
+    }
+
+    @AfterEach
+    void tearDown() {
+        AuthorizationServerContextHolder.resetContext();
+        passwordVerifier.shutdown();
+    }
+
+    @Test
+    public void refreshShouldIssueNewTokensWithoutCheckingPassword() {
+        OAuth2AccessTokenAuthenticationToken login = login();
+        Assertions.assertNotNull(login.getRefreshToken());
+
+        OAuth2AccessTokenAuthenticationToken refreshed = refresh(login.getRefreshToken().getTokenValue());
+
+        Assertions.assertNotEquals(login.getRefreshToken().getTokenValue(), refreshed.getRefreshToken().getTokenValue());
+        Jwt jwt = jwtDecoder.decode(refreshed.getAccessToken().getTokenValue());
+        Assertions.assertEquals(EMAIL, jwt.getClaimAsString("username"));
+        Assertions.assertEquals(1L, ((Number) jwt.getClaim("user_id")).longValue());
+        Assertions.assertEquals(List.of("ROLE_STUDENT"), jwt.getClaimAsStringList("authorities"));
+        Assertions.assertEquals(1, passwordChecks.get());
+    }
+
+    @Test
+    public void refreshShouldRejectRefreshTokenThatWasAlreadyUsed() {
+        String refreshToken = login().getRefreshToken().getTokenValue();
+        String rotated = refresh(refreshToken).getRefreshToken().getTokenValue();
+
+        assertInvalidGrant(refreshToken);
+        Assertions.assertNotNull(refresh(rotated).getAccessToken());
+    }
+
+    @Test
+    public void refreshShouldUseCurrentAuthoritiesOfUser() {
+        String refreshToken = login().getRefreshToken().getTokenValue();
+        users.get(EMAIL).getRoles().add(new Role(2L, "ROLE_INSTRUCTOR"));
+
+        Jwt jwt = jwtDecoder.decode(refresh(refreshToken).getAccessToken().getTokenValue());
+
+        Assertions.assertTrue(jwt.getClaimAsStringList("authorities").contains("ROLE_INSTRUCTOR"));
+    }
+
+    @Test
+    public void refreshShouldRejectRefreshTokenWhenUserNoLongerExists() {
+        String refreshToken = login().getRefreshToken().getTokenValue();
+        users.remove(EMAIL);
+
+        assertInvalidGrant(refreshToken);
+    }
+
+    @Test
+    public void refreshShouldRejectRefreshTokenIssuedBeforeUserWasRevoked() {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(EmbeddedDatabaseType.H2)
+                .addScript("classpath:schema.sql")
+                .build();
+        try {
+            TokenRevocationService tokenRevocationService = new TokenRevocationService(new JdbcTemplate(database),
+                    Duration.ofMinutes(5), Duration.ofDays(30), new SimpleMeterRegistry());
+            refreshProvider.setTokenRevocationService(tokenRevocationService);
+            String refreshToken = login().getRefreshToken().getTokenValue();
+
+            tokenRevocationService.revokeUser(1L);
+
+            assertInvalidGrant(refreshToken);
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    @Test
+    public void refreshShouldRejectUnknownRefreshToken() {
+        assertInvalidGrant("unknown");
+    }
+
+    private User loadUser(String username) {
+        User user = users.get(username);
+        if (user == null) {
+            throw new UsernameNotFoundException("User not found");
+        }
+        return user;
+    }
+
+    private OAuth2AccessTokenAuthenticationToken login() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("username", EMAIL);
+        parameters.put("password", PASSWORD);
+        return (OAuth2AccessTokenAuthenticationToken) passwordProvider.authenticate(
+                new CustomPasswordAuthenticationToken(clientPrincipal(), null, parameters));
+    }
+
+    private OAuth2AccessTokenAuthenticationToken refresh(String refreshToken) {
+        return (OAuth2AccessTokenAuthenticationToken) refreshProvider.authenticate(
+                new OAuth2RefreshTokenAuthenticationToken(refreshToken, clientPrincipal(), null, null));
+    }
+
+    private void assertInvalidGrant(String refreshToken) {
+        OAuth2AuthenticationException exception = Assertions.assertThrows(OAuth2AuthenticationException.class,
+                () -> refresh(refreshToken));
+        Assertions.assertEquals(OAuth2ErrorCodes.INVALID_GRANT, exception.getError().getErrorCode());
+    }
+
+    private OAuth2ClientAuthenticationToken clientPrincipal() {
+        return new OAuth2ClientAuthenticationToken(registeredClient, ClientAuthenticationMethod.CLIENT_SECRET_BASIC, null);
+    }
+}
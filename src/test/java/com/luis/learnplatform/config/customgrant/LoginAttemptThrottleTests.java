@@ -0,0 +1,136 @@
+package com.luis.learnplatform.config.customgrant;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LoginAttemptThrottleTests {
+
+    private static final int EMAILS = 10_000;
+    private static final int THREADS = 32;
+    private static final Duration WINDOW = Duration.ofMinutes(10);
+
+    private AtomicLong nanos;
+    private LoginAttemptThrottle throttle;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        nanos = new AtomicLong(-5_000_000_000L);
+        throttle = new LoginAttemptThrottle(5, 50, WINDOW, 2 * EMAILS, new SimpleMeterRegistry(), nanos::get);
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void checkAllowedShouldThrowOnceEmailHasReachedLimit() {
+        for (int i = 0; i < 5; i++) {
+            throttle.checkAllowed("alex@gmail.com", null);
+            throttle.recordFailure("alex@gmail.com", null);
+        }
+
+        TooManyLoginAttemptsException e = Assertions.assertThrows(TooManyLoginAttemptsException.class,
+                () -> throttle.checkAllowed("ALEX@gmail.com", null));
+        Assertions.assertEquals(TooManyLoginAttemptsException.ERROR_CODE, e.getError().getErrorCode());
+        Assertions.assertEquals(WINDOW, e.getRetryAfter());
+        throttle.checkAllowed("maria@gmail.com", null);
+    }
+
+    @Test
+    public void checkAllowedShouldAllowAgainOnceFailuresLeaveWindow() {
+        throttle.recordFailure("alex@gmail.com", null);
+        nanos.addAndGet(WINDOW.toNanos() / 2);
+        for (int i = 0; i < 4; i++) {
+            throttle.recordFailure("alex@gmail.com", null);
+        }
+        TooManyLoginAttemptsException e = Assertions.assertThrows(TooManyLoginAttemptsException.class,
+                () -> throttle.checkAllowed("alex@gmail.com", null));
+        Assertions.assertEquals(WINDOW.dividedBy(2), e.getRetryAfter());
+
+        nanos.addAndGet(WINDOW.toNanos() / 2);
+
+        throttle.checkAllowed("alex@gmail.com", null);
+    }
+
+    @Test
+    public void recordSuccessShouldResetEmailButNotSource() {
+        for (int i = 0; i < 50; i++) {
+            throttle.recordFailure(i % 5 == 0 ? "alex@gmail.com" : "user" + i + "@gmail.com", "10.0.0.1");
+        }
+
+        throttle.recordSuccess("alex@gmail.com");
+
+        throttle.checkAllowed("alex@gmail.com", "10.0.0.2");
+        Assertions.assertThrows(TooManyLoginAttemptsException.class, () -> throttle.checkAllowed("alex@gmail.com", "10.0.0.1"));
+    }
+
+    @Test
+    public void recordFailureShouldBlockEachEmailExactlyAtLimitWhenCalledConcurrently() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int offset = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int attempt = 0; attempt < 5; attempt++) {
+                    for (int i = offset; i < EMAILS; i += THREADS) {
+                        throttle.recordFailure(email(i), null);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+
+        for (int i = 0; i < EMAILS; i++) {
+            String email = email(i);
+            Assertions.assertThrows(TooManyLoginAttemptsException.class, () -> throttle.checkAllowed(email, null));
+        }
+        throttle.checkAllowed(email(EMAILS), null);
+    }
+
+    @Test
+    public void recordFailureShouldCountEveryAttemptOnSharedKeyWhenCalledConcurrently() throws Exception {
+        LoginAttemptThrottle shared = new LoginAttemptThrottle(THREADS * 1000, 1, WINDOW, 10,
+                new SimpleMeterRegistry(), nanos::get);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 1000; i++) {
+                    shared.recordFailure("alex@gmail.com", null);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+
+        Assertions.assertThrows(TooManyLoginAttemptsException.class, () -> shared.checkAllowed("alex@gmail.com", null));
+        shared.recordSuccess("alex@gmail.com");
+        shared.recordFailure("alex@gmail.com", null);
+        shared.checkAllowed("alex@gmail.com", null);
+    }
+
+    private static String email(int i) {
+        return "user" + i + "@gmail.com";
+    }
+}
@@ -0,0 +1,61 @@
+package com.luis.learnplatform.config.customgrant;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class PasswordUpgraderTests {
+
+    private BCryptPasswordEncoder passwordEncoder;
+    private BlockingQueue<String> savedHashes;
+    private PasswordUpgrader upgrader;
+
+    @BeforeEach
+    void setUp() {
+        passwordEncoder = new BCryptPasswordEncoder(5);
+        savedHashes = new LinkedBlockingQueue<>();
+        upgrader = new PasswordUpgrader(passwordEncoder, (user, newPassword) -> {
+            savedHashes.add(newPassword);
+            return user;
+        }, 10, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        upgrader.shutdown();
+    }
+
+    @Test
+    public void upgradeIfNeededShouldSaveHashWithCurrentCostWhenStoredCostIsLower() throws Exception {
+        UserDetails user = user(new BCryptPasswordEncoder(4).encode("123456"));
+
+        upgrader.upgradeIfNeeded(user, "123456");
+
+        String saved = savedHashes.poll(10, TimeUnit.SECONDS);
+        Assertions.assertNotNull(saved);
+        Assertions.assertTrue(saved.startsWith("$2a$05$"));
+        Assertions.assertTrue(passwordEncoder.matches("123456", saved));
+    }
+
+    @Test
+    public void upgradeIfNeededShouldNotSaveWhenStoredHashIsCurrent() throws Exception {
+        UserDetails user = user(passwordEncoder.encode("123456"));
+
+        upgrader.upgradeIfNeeded(user, "123456");
+
+        Assertions.assertNull(savedHashes.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private static UserDetails user(String password) {
+        return User.withUsername("alex@gmail.com").password(password).roles("STUDENT").build();
+    }
+}
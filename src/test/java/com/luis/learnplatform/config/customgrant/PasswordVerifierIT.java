@@ -0,0 +1,58 @@
+package com.luis.learnplatform.config.customgrant;
+
+import com.luis.learnplatform.repositories.UserRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// The calibrated cost is forced above the cost 10 of the seed hashes, which users keep until they log in
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:passwordverifier",
+        "security.password-hash.min-cost=11",
+        "security.password-hash.max-cost=11"
+})
+@DirtiesContext
+public class PasswordVerifierIT {
+
+    private static final Pattern COST = Pattern.compile("\\$2[abxy]?\\$(\\d{2})\\$");
+
+    @Autowired
+    private PasswordVerifier passwordVerifier;
+
+    @Autowired
+    private UserRepository repository;
+
+    @MockitoSpyBean
+    private PasswordEncoder passwordEncoder;
+
+    @Test
+    public void knownAndUnknownUsersShouldBeCheckedAgainstHashesOfTheSameCost() {
+        String storedPassword = repository.findByEmail("maria@gmail.com").orElseThrow().getPassword();
+
+        passwordVerifier.matches("wrong password", storedPassword);
+        passwordVerifier.matchesUnknownUser("wrong password");
+
+        ArgumentCaptor<String> hashes = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(passwordEncoder, Mockito.times(2)).matches(Mockito.any(), hashes.capture());
+        List<String> checked = hashes.getAllValues();
+        Assertions.assertEquals(10, cost(checked.get(0)));
+        Assertions.assertEquals(cost(checked.get(0)), cost(checked.get(1)));
+        Assertions.assertEquals(11, cost(passwordEncoder.encode("new password")));
+    }
+
+    private static int cost(String hash) {
+        Matcher matcher = COST.matcher(hash);
+        Assertions.assertTrue(matcher.find(), hash);
+        return Integer.parseInt(matcher.group(1));
+    }
+}
@@ -0,0 +1,120 @@
+package com.luis.learnplatform.config.customgrant;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class PasswordVerifierTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CountDownLatch release;
+    private CountDownLatch started;
+    private ExecutorService callers;
+    private PasswordVerifier verifier;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        release = new CountDownLatch(1);
+        started = new CountDownLatch(1);
+        callers = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        if (verifier != null) {
+            verifier.shutdown();
+        }
+    }
+
+    @Test
+    public void matchesShouldDelegateToPasswordEncoder() {
+        verifier = new PasswordVerifier(NoOpPasswordEncoder.getInstance(), 1, 1, Duration.ofSeconds(5), meterRegistry);
+
+        Assertions.assertTrue(verifier.matches("12345678", "12345678"));
+        Assertions.assertFalse(verifier.matches("12345678", "87654321"));
+    }
+
+    @Test
+    public void matchesUnknownUserShouldCheckGivenHashAndReturnFalse() {
+        List<String> checked = new CopyOnWriteArrayList<>();
+        PasswordEncoder recording = new PasswordEncoder() {
+
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                checked.add(encodedPassword);
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+        verifier = new PasswordVerifier(recording, "unknown-user-hash", 1, 1, Duration.ofSeconds(5), meterRegistry);
+
+        Assertions.assertFalse(verifier.matchesUnknownUser("unknown-user-hash"));
+        Assertions.assertEquals(List.of("unknown-user-hash"), checked);
+    }
+
+    @Test
+    public void matchesShouldRejectWithTemporarilyUnavailableWhenQueueIsFull() throws Exception {
+        verifier = new PasswordVerifier(new BlockingPasswordEncoder(), 1, 1, Duration.ofSeconds(30), meterRegistry);
+
+        callers.submit(() -> verifier.matches("a", "a"));
+        started.await(5, TimeUnit.SECONDS);
+        callers.submit(() -> verifier.matches("b", "b"));
+        waitForQueuedTask();
+
+        OAuth2AuthenticationException exception =
+                Assertions.assertThrows(OAuth2AuthenticationException.class, () -> verifier.matches("c", "c"));
+        Assertions.assertEquals(OAuth2ErrorCodes.TEMPORARILY_UNAVAILABLE, exception.getError().getErrorCode());
+        Assertions.assertEquals(1.0, meterRegistry.get("security.password.verifier.rejections").counter().count());
+    }
+
+    @Test
+    public void matchesShouldGiveUpWithTemporarilyUnavailableWhenVerificationTakesTooLong() {
+        verifier = new PasswordVerifier(new BlockingPasswordEncoder(), 1, 1, Duration.ofMillis(50), meterRegistry);
+
+        OAuth2AuthenticationException exception =
+                Assertions.assertThrows(OAuth2AuthenticationException.class, () -> verifier.matches("a", "a"));
+        Assertions.assertEquals(OAuth2ErrorCodes.TEMPORARILY_UNAVAILABLE, exception.getError().getErrorCode());
+    }
+
+    private void waitForQueuedTask() throws InterruptedException {
+        for (int i = 0; i < 100 && meterRegistry.get("executor.queued").gauge().value() < 1; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private class BlockingPasswordEncoder implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return rawPassword.toString().equals(encodedPassword);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.luis.learnplatform.config.jwk;
+
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+public class JdbcJwkSourceTests {
+
+    private static final Duration ROTATION_INTERVAL = Duration.ofDays(7);
+    private static final Duration RETENTION = Duration.ofDays(1);
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(EmbeddedDatabaseType.H2)
+                .addScript("classpath:schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void startupShouldReuseStoredKey() {
+        JdbcJwkSource generated = newJwkSource(Duration.ZERO);
+        JdbcJwkSource loaded = newJwkSource(Duration.ZERO);
+
+        Assertions.assertEquals(signingKeyId(generated), signingKeyId(loaded));
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM oauth2_jwk", Integer.class));
+    }
+
+    @Test
+    public void refreshShouldRotateKeyAndKeepPreviousKeyForVerification() {
+        JWK previous = insertKey(Instant.now().minus(ROTATION_INTERVAL).minusSeconds(60));
+
+        JdbcJwkSource jwkSource = newJwkSource(Duration.ZERO);
+
+        List<String> keyIds = keyIds(jwkSource);
+        Assertions.assertEquals(2, keyIds.size());
+        Assertions.assertTrue(keyIds.contains(previous.getKeyID()));
+        Assertions.assertNotEquals(previous.getKeyID(), signingKeyId(jwkSource));
+    }
+
+    @Test
+    public void refreshShouldKeepSigningWithPreviousKeyUntilNewKeyIsActive() {
+        JWK previous = insertKey(Instant.now().minus(ROTATION_INTERVAL).minusSeconds(60));
+
+        JdbcJwkSource jwkSource = newJwkSource(Duration.ofMinutes(1));
+
+        Assertions.assertEquals(2, keyIds(jwkSource).size());
+        Assertions.assertEquals(previous.getKeyID(), signingKeyId(jwkSource));
+    }
+
+    @Test
+    public void refreshShouldRemoveKeysOlderThanRetention() {
+        JWK expired = insertKey(Instant.now().minus(ROTATION_INTERVAL).minus(RETENTION).minusSeconds(60));
+        JWK current = insertKey(Instant.now());
+
+        JdbcJwkSource jwkSource = newJwkSource(Duration.ZERO);
+
+        Assertions.assertEquals(List.of(current.getKeyID()), keyIds(jwkSource));
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM oauth2_jwk WHERE id = ?", Integer.class, expired.getKeyID()));
+    }
+
+    @Test
+    public void refreshShouldSignWithNewAlgorithmAndKeepOldKeysForVerificationWhenAlgorithmChanges() {
+        JWK rsaKey = insertKey(Instant.now().minusSeconds(60));
+
+        JdbcJwkSource jwkSource = new JdbcJwkSource(jdbcTemplate, SignatureAlgorithm.ES256, ROTATION_INTERVAL,
+                Duration.ofMinutes(1), RETENTION);
+
+        Assertions.assertTrue(keyIds(jwkSource).contains(rsaKey.getKeyID()));
+        JWK signingKey = signingKey(jwkSource);
+        Assertions.assertTrue(signingKey instanceof ECKey);
+        Assertions.assertEquals("ES256", signingKey.getAlgorithm().getName());
+    }
+
+    private JdbcJwkSource newJwkSource(Duration activationDelay) {
+        return new JdbcJwkSource(jdbcTemplate, SignatureAlgorithm.RS256, ROTATION_INTERVAL, activationDelay, RETENTION);
+    }
+
+    private JWK insertKey(Instant createdAt) {
+        JWK key = Jwks.generate(SignatureAlgorithm.RS256);
+        jdbcTemplate.update("INSERT INTO oauth2_jwk (id, jwk, created_at) VALUES (?, ?, ?)",
+                key.getKeyID(), key.toJSONString(), Timestamp.from(createdAt));
+        return key;
+    }
+
+    private static List<JWK> keys(JWKSource<SecurityContext> jwkSource) {
+        try {
+            return jwkSource.get(new JWKSelector(new JWKMatcher.Builder().build()), null);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<String> keyIds(JWKSource<SecurityContext> jwkSource) {
+        return keys(jwkSource).stream().map(JWK::getKeyID).toList();
+    }
+
+    private static JWK signingKey(JdbcJwkSource jwkSource) {
+        List<JWK> keys = keys(jwkSource.signingKeySource());
+        Assertions.assertEquals(1, keys.size());
+        return keys.get(0);
+    }
+
+    private static String signingKeyId(JdbcJwkSource jwkSource) {
+        return signingKey(jwkSource).getKeyID();
+    }
+}
@@ -0,0 +1,80 @@
+package com.luis.learnplatform.config.jwt;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CachingJwtDecoderTests {
+
+    private AtomicInteger decodes;
+    private AtomicLong nanos;
+    private Instant expiresAt;
+    private CachingJwtDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        decodes = new AtomicInteger();
+        nanos = new AtomicLong();
+        expiresAt = Instant.now().plusSeconds(30);
+        JwtDecoder delegate = token -> {
+            decodes.incrementAndGet();
+            if (token.startsWith("invalid")) {
+                throw new BadJwtException("Invalid signature");
+            }
+            return Jwt.withTokenValue(token)
+                    .header("alg", "RS256")
+                    .claim("username", token)
+                    .issuedAt(expiresAt.minusSeconds(60))
+                    .expiresAt(expiresAt)
+                    .build();
+        };
+        Ticker ticker = nanos::get;
+        decoder = new CachingJwtDecoder(delegate, 100, new SimpleMeterRegistry(), ticker);
+    }
+
+    @Test
+    public void decodeShouldVerifyTokenOnlyOnceWhenRepeated() {
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals("token", decoder.decode("token").getClaimAsString("username"));
+        }
+
+        Assertions.assertEquals(1, decodes.get());
+    }
+
+    @Test
+    public void decodeShouldKeepTokensApart() {
+        Assertions.assertEquals("token-1", decoder.decode("token-1").getClaimAsString("username"));
+        Assertions.assertEquals("token-2", decoder.decode("token-2").getClaimAsString("username"));
+
+        Assertions.assertEquals(2, decodes.get());
+    }
+
+    @Test
+    public void decodeShouldNotCacheRejectedTokens() {
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertThrows(BadJwtException.class, () -> decoder.decode("invalid"));
+        }
+
+        Assertions.assertEquals(3, decodes.get());
+    }
+
+    @Test
+    public void decodeShouldVerifyAgainOnceTokenHasExpired() {
+        decoder.decode("token");
+
+        nanos.addAndGet(Duration.ofSeconds(31).toNanos());
+        decoder.decode("token");
+
+        Assertions.assertEquals(2, decodes.get());
+    }
+}
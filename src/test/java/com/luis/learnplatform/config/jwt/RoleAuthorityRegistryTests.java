@@ -0,0 +1,72 @@
+package com.luis.learnplatform.config.jwt;
+
+import com.luis.learnplatform.entities.Role;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class RoleAuthorityRegistryTests {
+
+    private RoleAuthorityRegistry registry;
+    private RoleAuthoritiesConverter converter;
+
+    @BeforeEach
+    void setUp() {
+        registry = new RoleAuthorityRegistry(List.of(new Role(1L, "ROLE_STUDENT"), new Role(2L, "ROLE_INSTRUCTOR"),
+                new Role(3L, "ROLE_ADMIN")));
+        converter = new RoleAuthoritiesConverter(registry);
+    }
+
+    @Test
+    public void toMaskShouldSetOneBitPerRoleId() {
+        Assertions.assertEquals(5L, registry.toMask(List.of(new Role(1L, "ROLE_STUDENT"), new Role(3L, "ROLE_ADMIN"))));
+        Assertions.assertEquals(0L, registry.toMask(List.of()));
+        Assertions.assertNull(registry.toMask(List.of(new SimpleGrantedAuthority("SCOPE_read"))));
+    }
+
+    @Test
+    public void fromMaskShouldReturnSameInstancesOnEveryCall() {
+        List<GrantedAuthority> authorities = registry.fromMask(5L);
+
+        Assertions.assertEquals(List.of("ROLE_STUDENT", "ROLE_ADMIN"), names(authorities));
+        Assertions.assertSame(authorities, registry.fromMask(5L));
+        Assertions.assertSame(authorities.get(0), registry.fromMask(1L).get(0));
+        Assertions.assertEquals(List.of("ROLE_STUDENT"), names(registry.fromMask(1L | 1L << 40)));
+    }
+
+    @Test
+    public void fromNamesShouldReuseInstancesOfKnownRoles() {
+        List<GrantedAuthority> authorities = registry.fromNames(List.of("ROLE_ADMIN", "ROLE_UNKNOWN"));
+
+        Assertions.assertSame(registry.fromMask(4L).get(0), authorities.get(0));
+        Assertions.assertEquals("ROLE_UNKNOWN", authorities.get(1).getAuthority());
+        Assertions.assertSame(registry.fromNames(List.of("ROLE_STUDENT")), registry.fromNames(List.of("ROLE_STUDENT")));
+    }
+
+    @Test
+    public void convertShouldReadRolesMaskAndAuthoritiesList() {
+        Jwt compact = jwt().claim("roles", 6L).build();
+        Jwt full = jwt().claim("authorities", List.of("ROLE_INSTRUCTOR", "ROLE_ADMIN")).build();
+
+        Assertions.assertEquals(names(converter.convert(full)), names(converter.convert(compact)));
+        Assertions.assertSame(converter.convert(compact), converter.convert(compact));
+        Assertions.assertTrue(converter.convert(jwt().claim("username", "alex@gmail.com").build()).isEmpty());
+    }
+
+    private static Jwt.Builder jwt() {
+        return Jwt.withTokenValue("token").header("alg", "RS256");
+    }
+
+    private static List<String> names(Collection<GrantedAuthority> authorities) {
+        List<String> names = new ArrayList<>();
+        authorities.forEach(authority -> names.add(authority.getAuthority()));
+        return names;
+    }
+}
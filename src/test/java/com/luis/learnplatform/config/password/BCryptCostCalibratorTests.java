@@ -0,0 +1,57 @@
+package com.luis.learnplatform.config.password;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BCryptCostCalibratorTests {
+
+    private final List<Integer> measured = new ArrayList<>();
+
+    @Test
+    public void calibrateShouldPickHighestCostWithinBudget() {
+        BCryptCostCalibrator.Calibration calibration = calibrator(Duration.ofMillis(100), 4, 16).calibrate();
+
+        Assertions.assertEquals(10, calibration.cost());
+        Assertions.assertEquals(Duration.ofMillis(64), calibration.hashTime());
+        Assertions.assertEquals(List.of(4, 5, 6, 7, 8, 9, 10), measured);
+    }
+
+    @Test
+    public void calibrateShouldNotGoBelowMinCost() {
+        BCryptCostCalibrator.Calibration calibration = calibrator(Duration.ofMillis(10), 12, 16).calibrate();
+
+        Assertions.assertEquals(12, calibration.cost());
+        Assertions.assertEquals(List.of(12), measured);
+    }
+
+    @Test
+    public void calibrateShouldNotGoAboveMaxCost() {
+        BCryptCostCalibrator.Calibration calibration = calibrator(Duration.ofSeconds(10), 4, 8).calibrate();
+
+        Assertions.assertEquals(8, calibration.cost());
+    }
+
+    @Test
+    public void bindToShouldRegisterCalibrationGauges() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        calibrator(Duration.ofMillis(100), 4, 16).calibrate().bindTo(registry);
+
+        Assertions.assertEquals(10.0, registry.get("security.password.hash.cost").gauge().value());
+        Assertions.assertEquals(64.0, registry.get("security.password.hash.duration").gauge().value());
+        Assertions.assertEquals(100.0, registry.get("security.password.hash.budget").gauge().value());
+    }
+
+    // Each cost step doubles the work: cost 4 takes 1ms, cost 10 takes 64ms
+    private BCryptCostCalibrator calibrator(Duration budget, int minCost, int maxCost) {
+        return new BCryptCostCalibrator(budget, minCost, maxCost, cost -> {
+            measured.add(cost);
+            return Duration.ofMillis(1L << (cost - 4));
+        });
+    }
+}
@@ -1,18 +1,26 @@
 package com.luis.learnplatform.controllers;
 
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.luis.learnplatform.entities.DTO.RoleDTO;
 import com.luis.learnplatform.entities.DTO.UserInsertDTO;
+import com.luis.learnplatform.entities.DTO.UserPatchDTO;
 import com.luis.learnplatform.factories.UserFactory;
 import com.luis.learnplatform.repositories.UserRepository;
 import com.luis.learnplatform.util.TokenUtil;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,9 +31,13 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
+import java.util.Set;
+
 @SpringBootTest
 @AutoConfigureMockMvc
 @Transactional
@@ -125,6 +137,94 @@ public class UserControllerIT {
 
 
 
+    @Test
+    public void findAllAfterShouldWalkAllUsersSortedByNameUsingNextCursor() throws Exception {
+        ResultActions first =
+                mockMvc.perform(get("/users/cursor?size={size}", 3)
+                        .accept(MediaType.APPLICATION_JSON));
+
+        first.andExpect(status().isOk());
+        first.andExpect(jsonPath("$.content.length()").value(3));
+        first.andExpect(jsonPath("$.content[0].name").value("Alex Brown"));
+        first.andExpect(jsonPath("$.content[2].name").value("Joana Santos"));
+        first.andExpect(jsonPath("$.totalElements").doesNotExist());
+        first.andExpect(jsonPath("$.next").exists());
+
+        String next = objectMapper.readTree(first.andReturn().getResponse().getContentAsString()).get("next").asText();
+        ResultActions second =
+                mockMvc.perform(get("/users/cursor?size={size}&after={after}", 3, next)
+                        .accept(MediaType.APPLICATION_JSON));
+
+        second.andExpect(status().isOk());
+        second.andExpect(jsonPath("$.content.length()").value(1));
+        second.andExpect(jsonPath("$.content[0].name").value("Maria Green"));
+        second.andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    public void findAllAfterShouldReturnBadRequestWhenCursorIsInvalid() throws Exception {
+        ResultActions result =
+                mockMvc.perform(get("/users/cursor?after={after}", "not-a-cursor")
+                        .accept(MediaType.APPLICATION_JSON));
+
+        result.andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void exportUsersShouldStreamNdjsonWhenAdmin() throws Exception {
+        MvcResult started =
+                mockMvc.perform(get("/users/export")
+                        .header("Authorization", "Bearer " + tokenAdmin)
+                        .accept(MediaType.APPLICATION_NDJSON))
+                        .andExpect(request().asyncStarted())
+                        .andReturn();
+
+        ResultActions result = mockMvc.perform(asyncDispatch(started));
+
+        result.andExpect(status().isOk());
+        result.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON));
+        result.andExpect(header().string("Content-Disposition", "attachment; filename=\"users.ndjson\""));
+        Assertions.assertEquals(600000L, started.getRequest().getAsyncContext().getTimeout());
+        String body = started.getResponse().getContentAsString();
+        Assertions.assertTrue(body.startsWith("""
+                {"id":1,"name":"Alex Brown","email":"alex@gmail.com","roles":["ROLE_STUDENT"]}
+                {"id":2,"name":"Bob Brown","email":"bob@gmail.com","roles":["ROLE_STUDENT","ROLE_INSTRUCTOR"]}
+                {"id":3,"name":"Maria Green","email":"maria@gmail.com","roles":["ROLE_STUDENT","ROLE_INSTRUCTOR","ROLE_ADMIN"]}
+                {"id":4,"name":"Joana Santos","email":"joana@gmail.com","roles":[]}
+                """), body);
+    }
+
+    @Test
+    public void exportUsersShouldStreamCsvWhenAdminAcceptsCsv() throws Exception {
+        MvcResult started =
+                mockMvc.perform(get("/users/export")
+                        .header("Authorization", "Bearer " + tokenAdmin)
+                        .accept("text/csv"))
+                        .andExpect(request().asyncStarted())
+                        .andReturn();
+
+        ResultActions result = mockMvc.perform(asyncDispatch(started));
+
+        result.andExpect(status().isOk());
+        result.andExpect(content().contentTypeCompatibleWith("text/csv"));
+        String body = started.getResponse().getContentAsString();
+        Assertions.assertTrue(body.startsWith("""
+                id,name,email,roles
+                1,Alex Brown,alex@gmail.com,ROLE_STUDENT
+                2,Bob Brown,bob@gmail.com,ROLE_STUDENT|ROLE_INSTRUCTOR
+                """), body);
+    }
+
+    @Test
+    public void exportUsersShouldReturnForbiddenWhenNotAdmin() throws Exception {
+        ResultActions result =
+                mockMvc.perform(get("/users/export")
+                        .header("Authorization", "Bearer " + tokenStudent)
+                        .accept(MediaType.APPLICATION_NDJSON));
+
+        result.andExpect(status().isForbidden());
+    }
+
     @Test
     public void findByIdShouldReturnUserDTOWhenIdExists() throws Exception {
 
@@ -168,6 +268,108 @@ public class UserControllerIT {
         result.andExpect(jsonPath("$.email").value(repository.getReferenceById(loggedUserId).getEmail()));
     }
 
+    @Test
+    public void findAllByIdShouldReturnUsersInRequestOrderWithMissingIdsWhenAdmin() throws Exception {
+        ResultActions result =
+                mockMvc.perform(get("/users?ids={ids}", "3," + nonExistingUserId + ",1")
+                        .header("Authorization", "Bearer " + tokenAdmin)
+                        .accept(MediaType.APPLICATION_JSON));
+
+        result.andExpect(status().isOk());
+        result.andExpect(jsonPath("$.length()").value(3));
+        result.andExpect(jsonPath("$[0].id").value(3L));
+        result.andExpect(jsonPath("$[0].found").value(true));
+        result.andExpect(jsonPath("$[0].user.email").value("maria@gmail.com"));
+        result.andExpect(jsonPath("$[0].user.roles.length()").value(3));
+        result.andExpect(jsonPath("$[1].id").value(nonExistingUserId));
+        result.andExpect(jsonPath("$[1].found").value(false));
+        result.andExpect(jsonPath("$[1].user").isEmpty());
+        result.andExpect(jsonPath("$[2].user.email").value("alex@gmail.com"));
+    }
+
+    @Test
+    public void findAllByIdShouldAllowOnlySelfWhenNotAdmin() throws Exception {
+        mockMvc.perform(get("/users?ids={ids}", selfUserId)
+                        .header("Authorization", "Bearer " + tokenStudent)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].user.email").value("alex@gmail.com"));
+
+        ResultActions result =
+                mockMvc.perform(get("/users?ids={ids}", selfUserId + "," + existingUserId)
+                        .header("Authorization", "Bearer " + tokenStudent)
+                        .accept(MediaType.APPLICATION_JSON));
+
+        result.andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void findAllByIdShouldReturnBadRequestWhenTooManyIds() throws Exception {
+        String ids = String.join(",", Collections.nCopies(101, "1"));
+
+        ResultActions result =
+                mockMvc.perform(get("/users?ids={ids}", ids)
+                        .header("Authorization", "Bearer " + tokenAdmin)
+                        .accept(MediaType.APPLICATION_JSON));
+
+        result.andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void findByIdShouldReturnNotModifiedWhenETagMatches() throws Exception {
+        String eTag = mockMvc.perform(get("/users/{id}", existingUserId).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        ResultActions result =
+                mockMvc.perform(get("/users/{id}", existingUserId)
+                        .header("If-None-Match", eTag)
+                        .accept(MediaType.APPLICATION_JSON));
+
+        result.andExpect(status().isNotModified());
+        result.andExpect(header().string("ETag", eTag));
+        result.andExpect(content().string(""));
+    }
+
+    @Test
+    public void findByIdShouldReturnUserWithNewETagWhenUserChanged() throws Exception {
+        String eTag = mockMvc.perform(get("/users/{id}", selfUserId).accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(patch("/users/{id}", selfUserId)
+                        .header("Authorization", "Bearer " + tokenStudent)
+                        .content(objectMapper.writeValueAsString(new UserPatchDTO("Alex B.", null, null, null)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        ResultActions result =
+                mockMvc.perform(get("/users/{id}", selfUserId)
+                        .header("If-None-Match", eTag)
+                        .accept(MediaType.APPLICATION_JSON));
+
+        result.andExpect(status().isOk());
+        result.andExpect(jsonPath("$.name").value("Alex B."));
+        Assertions.assertNotEquals(eTag, result.andReturn().getResponse().getHeader("ETag"));
+    }
+
+    @Test
+    public void getMeShouldReturnNotModifiedWhenETagMatches() throws Exception {
+        String eTag = mockMvc.perform(get("/users/me")
+                        .header("Authorization", "Bearer " + tokenStudent)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        ResultActions result =
+                mockMvc.perform(get("/users/me")
+                        .header("Authorization", "Bearer " + tokenStudent)
+                        .header("If-None-Match", eTag)
+                        .accept(MediaType.APPLICATION_JSON));
+
+        result.andExpect(status().isNotModified());
+    }
+
     @Test
     public void insertShouldReturnCreatedUserDTO() throws Exception {
 
@@ -206,6 +408,56 @@ public class UserControllerIT {
         result.andExpect(jsonPath("$.email").value(userInsertDTO.getEmail()));
     }
 
+    @Test
+    public void patchShouldChangeOnlySuppliedFieldsWhenSelfUser() throws Exception {
+        String passwordBefore = repository.findById(selfUserId).get().getPassword();
+        String jsonBody = objectMapper.writeValueAsString(new UserPatchDTO("Alex B.", null, null, null));
+
+        ResultActions result =
+                mockMvc.perform(patch("/users/{id}", selfUserId)
+                        .header("Authorization", "Bearer " + tokenStudent)
+                        .content(jsonBody)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON));
+
+        result.andExpect(status().isOk());
+        result.andExpect(jsonPath("$.id").value(selfUserId));
+        result.andExpect(jsonPath("$.name").value("Alex B."));
+        result.andExpect(jsonPath("$.email").value("alex@gmail.com"));
+        result.andExpect(jsonPath("$.roles[0].authority").value("ROLE_STUDENT"));
+        Assertions.assertEquals(passwordBefore, repository.findById(selfUserId).get().getPassword());
+    }
+
+    @Test
+    public void patchShouldReturnForbiddenWhenOtherUser() throws Exception {
+        String jsonBody = objectMapper.writeValueAsString(new UserPatchDTO("Alex B.", null, null, null));
+
+        ResultActions result =
+                mockMvc.perform(patch("/users/{id}", existingUserId)
+                        .header("Authorization", "Bearer " + tokenStudent)
+                        .content(jsonBody)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON));
+
+        result.andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void patchShouldReturnForbiddenWhenNonAdminChangesOwnRoles() throws Exception {
+        String jsonBody = objectMapper.writeValueAsString(new UserPatchDTO(null, null, null,
+                Set.of(new RoleDTO(1L, "ROLE_STUDENT"), new RoleDTO(3L, "ROLE_ADMIN"))));
+
+        ResultActions result =
+                mockMvc.perform(patch("/users/{id}", selfUserId)
+                        .header("Authorization", "Bearer " + tokenStudent)
+                        .content(jsonBody)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON));
+
+        result.andExpect(status().isForbidden());
+        Assertions.assertFalse(repository.findById(selfUserId).get().hasRole("ROLE_ADMIN"));
+    }
+
     @Test
     public void updateShouldReturnUpdatedUserDTOWhenIdExistsAndAdminUser() throws Exception {
 
@@ -3,6 +3,8 @@ package com.luis.learnplatform.controllers;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -11,9 +13,12 @@ import com.luis.learnplatform.entities.DTO.EnrollmentDTO;
 import com.luis.learnplatform.entities.DTO.UserDTO;
 import com.luis.learnplatform.entities.DTO.UserInsertDTO;
 import com.luis.learnplatform.entities.User;
+import com.luis.learnplatform.entities.projections.UserVersion;
 import com.luis.learnplatform.factories.EnrollmentFactory;
 import com.luis.learnplatform.factories.UserFactory;
 import com.luis.learnplatform.services.EnrollmentService;
+import com.luis.learnplatform.services.UserExportService;
+import com.luis.learnplatform.services.UserImportService;
 import com.luis.learnplatform.services.UserService;
 import com.luis.learnplatform.services.exceptions.DatabaseException;
 import com.luis.learnplatform.services.exceptions.ResourceNotFoundException;
@@ -51,6 +56,12 @@ public class UserControllerTests {
     @MockitoBean
     private UserService userService;
 
+    @MockitoBean
+    private UserImportService userImportService;
+
+    @MockitoBean
+    private UserExportService userExportService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -81,6 +92,9 @@ public class UserControllerTests {
         Mockito.when(userService.findAll(any(),any(Pageable.class))).thenReturn(dtos);
         Mockito.when(userService.findById(existingUserId)).thenReturn(userDTO);
         Mockito.when(userService.findById(nonExistingUserId)).thenThrow(ResourceNotFoundException.class);
+        Mockito.when(userService.findVersion(existingUserId)).thenReturn(new UserVersion(existingUserId, 0L));
+        Mockito.when(userService.findVersion(nonExistingUserId)).thenThrow(ResourceNotFoundException.class);
+        Mockito.when(userService.getMyVersion()).thenReturn(new UserVersion(existingUserId, 0L));
         Mockito.doNothing().when(userService).delete(existingUserId);
         Mockito.doThrow(DatabaseException.class).when(userService).delete(dependentId);
         Mockito.doThrow(ResourceNotFoundException.class).when(userService).delete(nonExistingUserId);
@@ -220,6 +234,21 @@ public class UserControllerTests {
 
     }
 
+    @Test
+    public void findByIdShouldReturnNotModifiedWithoutLoadingUserWhenETagMatches() throws Exception {
+        String eTag = "\"" + existingUserId + ".0\"";
+
+        ResultActions result=
+                mockMvc.perform(get("/users/{id}", existingUserId)
+                        .header("If-None-Match", eTag)
+                        .accept(MediaType.APPLICATION_JSON));
+
+        result.andExpect(status().isNotModified());
+        result.andExpect(header().string("ETag", eTag));
+        result.andExpect(content().string(""));
+        Mockito.verify(userService, Mockito.never()).findById(any());
+    }
+
     @Test
     public void findByIdShouldThrowResourceNotFoundExceptionWhenIdDoesNotExist() throws Exception {
         ResultActions result=
@@ -0,0 +1,106 @@
+package com.luis.learnplatform.controllers;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.luis.learnplatform.util.TokenUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.annotation.Transactional;
+
+// The import writes through JDBC batches, which use up identity values even when the test rolls
+// back, so it runs on its own database and leaves the ids other tests expect untouched
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:userimport")
+@AutoConfigureMockMvc
+@DirtiesContext
+@Transactional
+public class UserImportControllerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TokenUtil tokenUtil;
+
+    private String tokenAdmin, tokenStudent;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tokenAdmin = tokenUtil.obtainAccessToken(mockMvc, "maria@gmail.com", "12345678");
+        tokenStudent = tokenUtil.obtainAccessToken(mockMvc, "alex@gmail.com", "12345678");
+    }
+
+    @Test
+    public void importUsersShouldCreateValidRowsAndReportRejectedOnesWhenAdmin() throws Exception {
+        String body = """
+                {"name":"Carla Dias","email":"carla@gmail.com","password":"12345678","roles":["ROLE_STUDENT"]}
+                {"name":"Alex Again","email":"alex@gmail.com","password":"12345678"}
+                {"name":"Carla Twin","email":"carla@gmail.com","password":"12345678"}
+                {"name":"Nuno Reis","email":"nuno@gmail.com","password":"12345678","roles":["ROLE_KING"]}
+                {"name":"Rita Melo","email":"rita@gmail.com","password":"12345678","roles":["ROLE_STUDENT","ROLE_INSTRUCTOR"]}
+                """;
+
+        ResultActions result =
+                mockMvc.perform(post("/users/import")
+                        .header("Authorization", "Bearer " + tokenAdmin)
+                        .content(body)
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .accept(MediaType.APPLICATION_JSON));
+
+        result.andExpect(status().isOk());
+        result.andExpect(jsonPath("$.imported").value(2));
+        result.andExpect(jsonPath("$.failed").value(3));
+        result.andExpect(jsonPath("$.errors[0].line").value(2));
+        result.andExpect(jsonPath("$.errors[0].message").value("Email already registered"));
+        result.andExpect(jsonPath("$.errors[1].line").value(3));
+        result.andExpect(jsonPath("$.errors[2].message").value("Unknown role ROLE_KING"));
+
+        mockMvc.perform(get("/users?name={name}", "ita me").accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.content[0].email").value("rita@gmail.com"))
+                .andExpect(jsonPath("$.content[0].roles.length()").value(2));
+        Assertions.assertNotNull(tokenUtil.obtainAccessToken(mockMvc, "carla@gmail.com", "12345678"));
+    }
+
+    @Test
+    public void importUsersShouldReadCsvWhenAdmin() throws Exception {
+        String body = """
+                name,email,password,roles
+                "Dias, Carla",carla@gmail.com,12345678,ROLE_STUDENT|ROLE_INSTRUCTOR
+                ,nobody@gmail.com,12345678,
+                """;
+
+        ResultActions result =
+                mockMvc.perform(post("/users/import")
+                        .header("Authorization", "Bearer " + tokenAdmin)
+                        .content(body)
+                        .contentType("text/csv")
+                        .accept(MediaType.APPLICATION_JSON));
+
+        result.andExpect(status().isOk());
+        result.andExpect(jsonPath("$.imported").value(1));
+        result.andExpect(jsonPath("$.errors[0].line").value(3));
+        result.andExpect(jsonPath("$.errors[0].message").value("Name is required"));
+    }
+
+    @Test
+    public void importUsersShouldReturnForbiddenWhenNotAdmin() throws Exception {
+        ResultActions result =
+                mockMvc.perform(post("/users/import")
+                        .header("Authorization", "Bearer " + tokenStudent)
+                        .content("{}")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .accept(MediaType.APPLICATION_JSON));
+
+        result.andExpect(status().isForbidden());
+    }
+}
@@ -3,17 +3,21 @@ package com.luis.learnplatform.repositories;
 import com.luis.learnplatform.entities.User;
 import com.luis.learnplatform.entities.projections.UserDetailsProjection;
 import com.luis.learnplatform.services.exceptions.DatabaseException;
+import com.luis.learnplatform.util.Trigrams;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @DataJpaTest
 public class UserRepositoryTests {
@@ -68,6 +72,53 @@ public class UserRepositoryTests {
         Assertions.assertTrue(users.isEmpty());
     }
 
+    @Test
+    public void findPageAfterShouldReturnUsersFollowingCursorOrderedByNameAndId() {
+        List<User> users = userRepository.findPageAfter("Bob Brown", 2L, Limit.of(10));
+
+        Assertions.assertEquals(List.of("Joana Santos", "Maria Green"), users.stream().map(User::getName).toList());
+    }
+
+    @Test
+    public void findPageAfterShouldIncludeUsersWithSameNameAndGreaterId() {
+        User namesake = new User(null, "Bob Brown", "bob2@gmail.com", "dsdsdasd");
+        namesake = userRepository.save(namesake);
+
+        List<User> users = userRepository.findPageAfter("Bob Brown", 2L, Limit.of(1));
+
+        Assertions.assertEquals(namesake.getId(), users.get(0).getId());
+    }
+
+    @Test
+    public void findPageAfterByNameContainingShouldApplyFilterAndCursor() {
+        List<User> users = userRepository.findPageAfterByNameContaining("brown", "Alex Brown", 1L, Limit.of(10));
+
+        Assertions.assertEquals(List.of("Bob Brown"), users.stream().map(User::getName).toList());
+    }
+
+    @Test
+    public void searchByNameShouldReturnMatchesRankedByMatchQuality() {
+        for (String name : new String[]{"Mazyxo Lima", "Ana Zyxa", "Zyxel Costa", "Zyx", "Xyz Zy"}) {
+            userRepository.save(new User(null, name, name.replace(" ", "") + "@gmail.com", "dsdsdasd"));
+        }
+        Set<String> trigrams = Trigrams.ofQuery("zyx");
+
+        Page<User> users = userRepository.searchByName("zyx", trigrams, trigrams.size(), PageRequest.of(0, 3, Sort.by("name")));
+
+        Assertions.assertEquals(4, users.getTotalElements());
+        Assertions.assertEquals(List.of("Zyx", "Zyxel Costa", "Ana Zyxa"), users.getContent().stream().map(User::getName).toList());
+    }
+
+    @Test
+    public void searchByNameShouldNotReturnUsersWhoseTrigramsMatchOutOfOrder() {
+        userRepository.save(new User(null, "Xabcx Ybcay Zcabz", "xabcx@gmail.com", "dsdsdasd"));
+        Set<String> trigrams = Trigrams.ofQuery("abcab");
+
+        Page<User> users = userRepository.searchByName("abcab", trigrams, trigrams.size(), PageRequest.of(0, 10));
+
+        Assertions.assertTrue(users.isEmpty());
+    }
+
     @Test
     public void findAllShouldReturnAllUsersPaged() {
         PageRequest pageRequest = PageRequest.of(0, 2);
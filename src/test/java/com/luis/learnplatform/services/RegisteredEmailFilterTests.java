@@ -0,0 +1,59 @@
+package com.luis.learnplatform.services;
+
+import com.luis.learnplatform.entities.projections.UserEmail;
+import com.luis.learnplatform.repositories.UserRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+@ExtendWith(SpringExtension.class)
+public class RegisteredEmailFilterTests {
+
+    @InjectMocks
+    private RegisteredEmailFilter filter;
+
+    @Mock
+    private UserRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(filter, "expectedInsertions", 1000L);
+        ReflectionTestUtils.setField(filter, "falsePositiveProbability", 0.01);
+        Mockito.when(repository.findEmailsAfter(0L)).thenReturn(List.of(
+                new UserEmail(1L, "alex@gmail.com"), new UserEmail(2L, "maria@gmail.com")));
+        filter.load();
+    }
+
+    @Test
+    public void refreshShouldAddOnlyUsersInsertedAfterTheLastSeenId() {
+        Mockito.when(repository.findEmailsAfter(2L)).thenReturn(List.of(new UserEmail(3L, "bob@gmail.com")));
+
+        Assertions.assertFalse(filter.mightBeRegistered("bob@gmail.com"));
+        filter.refresh();
+
+        Assertions.assertTrue(filter.mightBeRegistered("bob@gmail.com"));
+        filter.refresh();
+        Mockito.verify(repository).findEmailsAfter(3L);
+    }
+
+    @Test
+    public void reloadShouldAddChangedEmailsAndKeepEmailsAddedMeanwhile() {
+        filter.add("joana@gmail.com");
+        Mockito.when(repository.findEmailsAfter(0L)).thenReturn(List.of(
+                new UserEmail(1L, "alex.brown@gmail.com"), new UserEmail(2L, "maria@gmail.com")));
+
+        filter.reload();
+
+        Assertions.assertTrue(filter.mightBeRegistered("alex.brown@gmail.com"));
+        Assertions.assertTrue(filter.mightBeRegistered("joana@gmail.com"));
+        Assertions.assertFalse(filter.mightBeRegistered("stranger@gmail.com"));
+    }
+}
@@ -0,0 +1,224 @@
+package com.luis.learnplatform.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+public class TokenRevocationServiceTests {
+
+    private static final Duration ACCESS_TOKEN_TTL = Duration.ofHours(1);
+    private static final Duration REFRESH_TOKEN_TTL = Duration.ofDays(1);
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private MutableClock clock;
+    private TokenRevocationService service;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(EmbeddedDatabaseType.H2)
+                .addScript("classpath:schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+        service = newService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void isRevokedShouldRejectRevokedTokenUntilItExpires() {
+        Jwt jwt = jwt("jti-1", 1L, clock.instant());
+        service.revokeToken("jti-1", jwt.getExpiresAt());
+
+        Assertions.assertTrue(service.isRevoked(jwt));
+        Assertions.assertFalse(service.isRevoked(jwt("jti-2", 1L, clock.instant())));
+
+        // Still rejected after one rotation, while the token may be valid
+        clock.advance(ACCESS_TOKEN_TTL.minusMinutes(1));
+        Assertions.assertTrue(service.isRevoked(jwt));
+        clock.advance(Duration.ofMinutes(2));
+        Assertions.assertTrue(service.isRevoked(jwt));
+    }
+
+    @Test
+    public void revokeTokenShouldIgnoreExpiredToken() {
+        service.revokeToken("jti-1", clock.instant().minusSeconds(1));
+
+        Assertions.assertFalse(service.isRevoked(jwt("jti-1", 1L, clock.instant().minus(ACCESS_TOKEN_TTL))));
+    }
+
+    @Test
+    public void isRevokedShouldRejectTokensIssuedBeforeUserRevocation() {
+        Jwt before = jwt("jti-1", 1L, clock.instant().minusSeconds(60));
+        Jwt otherUser = jwt("jti-2", 2L, clock.instant().minusSeconds(60));
+
+        service.revokeUser(1L);
+        clock.advance(Duration.ofSeconds(1));
+        Jwt after = jwt("jti-3", 1L, clock.instant());
+
+        Assertions.assertTrue(service.isRevoked(before));
+        Assertions.assertFalse(service.isRevoked(otherUser));
+        Assertions.assertFalse(service.isRevoked(after));
+    }
+
+    @Test
+    public void isRevokedShouldRejectTokenIssuedInSameSecondAsUserRevocation() {
+        clock.advance(Duration.ofMillis(500));
+        Jwt sameSecond = jwt("jti-1", 1L, clock.instant().truncatedTo(ChronoUnit.SECONDS));
+
+        service.revokeUser(1L);
+
+        Assertions.assertTrue(service.isRevoked(sameSecond));
+    }
+
+    @Test
+    public void refreshShouldLoadRevocationsPublishedByOtherNodes() {
+        TokenRevocationService otherNode = newService();
+        Jwt revokedToken = jwt("jti-1", 1L, clock.instant());
+        Jwt revokedUserToken = jwt("jti-2", 2L, clock.instant().minusSeconds(60));
+
+        otherNode.revokeToken("jti-1", revokedToken.getExpiresAt());
+        otherNode.revokeUser(2L);
+        Assertions.assertFalse(service.isRevoked(revokedToken));
+        Assertions.assertFalse(service.isRevoked(revokedUserToken));
+
+        service.refresh();
+
+        Assertions.assertTrue(service.isRevoked(revokedToken));
+        Assertions.assertTrue(service.isRevoked(revokedUserToken));
+    }
+
+    @Test
+    public void refreshShouldOnlyReadRowsAddedSinceLastRefreshExceptLateCommits() {
+        TokenRevocationService otherNode = newService();
+        for (int i = 0; i < 200; i++) {
+            otherNode.revokeToken("jti-" + i, clock.instant().plus(ACCESS_TOKEN_TTL));
+        }
+        service.refresh();
+        long lastId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM token_revocation", Long.class);
+
+        // An old row is not read again, while one committed late with a recent id is
+        jdbcTemplate.update("UPDATE token_revocation SET token_id = 'old' WHERE id = ?", lastId - 150);
+        jdbcTemplate.update("UPDATE token_revocation SET token_id = 'late' WHERE id = ?", lastId - 5);
+        service.refresh();
+
+        Assertions.assertFalse(service.isRevoked(jwt("old", 1L, clock.instant())));
+        Assertions.assertTrue(service.isRevoked(jwt("late", 1L, clock.instant())));
+    }
+
+    @Test
+    public void revokeUserShouldApplyAndPublishRevocationWhenTransactionCommits() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database));
+        Jwt before = jwt("jti-1", 1L, clock.instant().minusSeconds(60));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            service.revokeUser(1L);
+            Assertions.assertFalse(service.isRevoked(before));
+        });
+
+        Assertions.assertTrue(service.isRevoked(before));
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM token_revocation", Integer.class));
+    }
+
+    @Test
+    public void revokeUserShouldIgnoreRevocationWhenTransactionRollsBack() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database));
+        Jwt before = jwt("jti-1", 1L, clock.instant().minusSeconds(60));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            service.revokeUser(1L);
+            status.setRollbackOnly();
+        });
+
+        Assertions.assertFalse(service.isRevoked(before));
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM token_revocation", Integer.class));
+    }
+
+    @Test
+    public void refreshShouldDeleteExpiredRevocations() {
+        service.revokeToken("jti-1", clock.instant().plus(ACCESS_TOKEN_TTL));
+        service.revokeUser(1L);
+
+        clock.advance(REFRESH_TOKEN_TTL.plusSeconds(1));
+        service.refresh();
+
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM token_revocation", Integer.class));
+    }
+
+    @Test
+    public void isUserRevokedSinceShouldForgetUsersAfterRefreshTokenLifetime() {
+        Instant issuedAt = clock.instant().minusSeconds(60);
+        service.revokeUser(1L);
+
+        Assertions.assertTrue(service.isUserRevokedSince(1L, issuedAt));
+        Assertions.assertFalse(service.isUserRevokedSince(1L, clock.instant().plusMillis(1)));
+
+        clock.advance(REFRESH_TOKEN_TTL.plusSeconds(1));
+        Assertions.assertFalse(service.isUserRevokedSince(1L, issuedAt));
+    }
+
+    private TokenRevocationService newService() {
+        return new TokenRevocationService(jdbcTemplate, ACCESS_TOKEN_TTL, REFRESH_TOKEN_TTL,
+                new SimpleMeterRegistry(), clock);
+    }
+
+    private static Jwt jwt(String tokenId, Long userId, Instant issuedAt) {
+        return Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .jti(tokenId)
+                .claim("user_id", userId)
+                .issuedAt(issuedAt)
+                .expiresAt(issuedAt.plus(ACCESS_TOKEN_TTL))
+                .build();
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
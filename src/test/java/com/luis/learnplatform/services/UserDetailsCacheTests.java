@@ -0,0 +1,203 @@
+package com.luis.learnplatform.services;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.luis.learnplatform.entities.projections.UserDetailsProjection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class UserDetailsCacheTests {
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private AtomicInteger queries;
+    private AtomicLong nanos;
+    private UserDetailsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(EmbeddedDatabaseType.H2)
+                .addScript("classpath:schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        queries = new AtomicInteger();
+        nanos = new AtomicLong();
+        cache = newCache();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void getShouldQueryOnlyOnceWhenRepeated() {
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals("alex@gmail.com", cache.get("alex@gmail.com", this::search).get(0).getUsername());
+        }
+
+        Assertions.assertEquals(1, queries.get());
+        Assertions.assertEquals(4, cache.stats().hitCount());
+        Assertions.assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    public void getShouldNotCacheUnknownEmail() {
+        cache.get("unknown@gmail.com", this::search);
+        cache.get("unknown@gmail.com", this::search);
+
+        Assertions.assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void getShouldQueryAgainAfterEvict() {
+        cache.get("alex@gmail.com", this::search);
+
+        cache.evict("alex@gmail.com");
+        cache.get("alex@gmail.com", this::search);
+
+        Assertions.assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void getShouldQueryAgainOnceTtlHasPassed() {
+        cache.get("alex@gmail.com", this::search);
+
+        nanos.addAndGet(TTL.plusSeconds(1).toNanos());
+        cache.get("alex@gmail.com", this::search);
+
+        Assertions.assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void refreshShouldDropEntriesEvictedByOtherNodes() {
+        UserDetailsCache otherNode = newCache();
+        cache.get("alex@gmail.com", this::search);
+        cache.get("maria@gmail.com", this::search);
+
+        otherNode.evict("alex@gmail.com");
+        cache.get("alex@gmail.com", this::search);
+        Assertions.assertEquals(2, queries.get());
+
+        cache.refresh();
+        cache.get("alex@gmail.com", this::search);
+        cache.get("maria@gmail.com", this::search);
+
+        Assertions.assertEquals(3, queries.get());
+    }
+
+    @Test
+    public void evictShouldOnlyBePublishedWhenTransactionCommits() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database));
+        UserDetailsCache otherNode = newCache();
+        cache.get("alex@gmail.com", this::search);
+        cache.get("maria@gmail.com", this::search);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            otherNode.evict("alex@gmail.com");
+            status.setRollbackOnly();
+        });
+        transactionTemplate.executeWithoutResult(status -> otherNode.evict("maria@gmail.com"));
+        cache.refresh();
+        cache.get("alex@gmail.com", this::search);
+        cache.get("maria@gmail.com", this::search);
+
+        Assertions.assertEquals(3, queries.get());
+    }
+
+    @Test
+    public void refreshShouldDeleteEvictionsOlderThanTtl() {
+        cache.evict("alex@gmail.com");
+        cache.refresh();
+        Assertions.assertEquals(1, count());
+
+        nanos.addAndGet(TTL.toNanos());
+        cache.refresh();
+
+        Assertions.assertEquals(0, count());
+    }
+
+    private UserDetailsCache newCache() {
+        Ticker ticker = nanos::get;
+        return new UserDetailsCache(jdbcTemplate, 100, TTL, new SimpleMeterRegistry(), ticker, new TickerClock());
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_details_eviction", Integer.class);
+    }
+
+    private List<UserDetailsProjection> search(String email) {
+        queries.incrementAndGet();
+        if (email.startsWith("unknown")) {
+            return List.of();
+        }
+        return List.of(new UserDetailsProjection() {
+            @Override
+            public Long getUserId() {
+                return 1L;
+            }
+
+            @Override
+            public String getUsername() {
+                return email;
+            }
+
+            @Override
+            public String getPassword() {
+                return "hash";
+            }
+
+            @Override
+            public Long getRoleId() {
+                return 1L;
+            }
+
+            @Override
+            public String getAuthority() {
+                return "ROLE_STUDENT";
+            }
+        });
+    }
+
+    // Wall clock moved by the same nanos as the cache ticker
+    private class TickerClock extends Clock {
+
+        private final Instant start = Instant.parse("2024-01-01T00:00:00Z");
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return start.plusNanos(nanos.get());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.luis.learnplatform.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+// Not transactional: the synthetic users are committed so the export streams them like any other
+// rows. They go into a database of their own, dropped with the context instead of deleted row by row.
+@Tag("slow")
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:userexport")
+@DirtiesContext
+public class UserExportServiceIT {
+
+    private static final int SYNTHETIC_USERS = 1_000_000;
+    private static final int INSERT_CHUNK = 100_000;
+    private static final int SAMPLE_EVERY = 100_000;
+    private static final long MAX_HEAP_GROWTH = 64L * 1024 * 1024;
+
+    // @formatter:off
+    private static final String INSERT_USERS_SQL = "INSERT INTO tb_user (name, email, password) SELECT 'Export User ' || X, 'export' || X || '@export.test', 'x' FROM SYSTEM_RANGE(?, ?)";
+    private static final String INSERT_USER_ROLES_SQL = "INSERT INTO tb_user_role (user_id, role_id) SELECT id, 1 FROM tb_user WHERE id > ?";
+    // @formatter:on
+
+    @Autowired
+    private UserExportService service;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    // Chunked so that no single statement has to keep a million rows in its undo log
+    @BeforeEach
+    void setUp() {
+        for (int from = 1; from <= SYNTHETIC_USERS; from += INSERT_CHUNK) {
+            long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM tb_user", Long.class);
+            jdbcTemplate.update(INSERT_USERS_SQL, from, Math.min(from + INSERT_CHUNK - 1, SYNTHETIC_USERS));
+            jdbcTemplate.update(INSERT_USER_ROLES_SQL, maxId);
+        }
+    }
+
+    @Test
+    public void exportUsersShouldKeepHeapBoundedWhenExportingOneMillionUsers() throws Exception {
+        long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_user", Long.class);
+        long baseline = usedHeapAfterGc();
+        HeapSamplingOutputStream out = new HeapSamplingOutputStream();
+
+        long exported = service.exportUsers(out, UserFileFormat.NDJSON);
+
+        Assertions.assertEquals(total, exported);
+        Assertions.assertEquals(total, out.lines);
+        Assertions.assertTrue(out.samples >= SYNTHETIC_USERS / SAMPLE_EVERY);
+        long growth = out.maxUsedHeap - baseline;
+        Assertions.assertTrue(growth < MAX_HEAP_GROWTH,
+                "Heap grew by " + growth / (1024 * 1024) + " MB while exporting " + exported + " users");
+    }
+
+    private long usedHeapAfterGc() {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    // Discards the export and measures the live heap every SAMPLE_EVERY lines, while the stream is still open
+    private class HeapSamplingOutputStream extends OutputStream {
+
+        private long lines;
+        private int samples;
+        private long maxUsedHeap;
+
+        @Override
+        public void write(int b) {
+            if (b == '\n' && ++lines % SAMPLE_EVERY == 0) {
+                samples++;
+                maxUsedHeap = Math.max(maxUsedHeap, usedHeapAfterGc());
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+    }
+}
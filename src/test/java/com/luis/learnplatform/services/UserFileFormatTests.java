@@ -0,0 +1,31 @@
+package com.luis.learnplatform.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+public class UserFileFormatTests {
+
+    @Test
+    public void fromAcceptShouldReturnFirstFormatAskedFor() {
+        Assertions.assertEquals(UserFileFormat.CSV, UserFileFormat.fromAccept(MediaType.parseMediaTypes("text/csv")));
+        Assertions.assertEquals(UserFileFormat.CSV, UserFileFormat.fromAccept(MediaType.parseMediaTypes("text/*, */*")));
+        Assertions.assertEquals(UserFileFormat.NDJSON,
+                UserFileFormat.fromAccept(MediaType.parseMediaTypes("application/x-ndjson, text/csv")));
+    }
+
+    @Test
+    public void fromAcceptShouldDefaultToNdjson() {
+        Assertions.assertEquals(UserFileFormat.NDJSON, UserFileFormat.fromAccept(List.of()));
+        Assertions.assertEquals(UserFileFormat.NDJSON, UserFileFormat.fromAccept(MediaType.parseMediaTypes("*/*")));
+    }
+
+    @Test
+    public void fromContentTypeShouldReturnNullWhenUnsupported() {
+        Assertions.assertEquals(UserFileFormat.CSV,
+                UserFileFormat.fromContentType(MediaType.parseMediaType("text/csv;charset=ISO-8859-1")));
+        Assertions.assertNull(UserFileFormat.fromContentType(MediaType.APPLICATION_JSON));
+    }
+}
@@ -0,0 +1,75 @@
+package com.luis.learnplatform.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.luis.learnplatform.services.exceptions.InvalidRequestException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class UserImportReaderTests {
+
+    @Test
+    public void nextShouldReadNdjsonObjectsAndSkipBlankLines() throws IOException {
+        List<UserImportReader.Row> rows = readAll(UserFileFormat.NDJSON, """
+                {"name":"Ana Lima","email":"ana@gmail.com","password":"12345678","roles":["ROLE_STUDENT"]}
+
+                {"name":"Rui Costa","email":"rui@gmail.com","password":"12345678"}
+                """);
+
+        Assertions.assertEquals(2, rows.size());
+        Assertions.assertEquals(new UserImportReader.Row(1, "Ana Lima", "ana@gmail.com", "12345678", List.of("ROLE_STUDENT"), null), rows.get(0));
+        Assertions.assertEquals(3, rows.get(1).line());
+        Assertions.assertEquals(List.of(), rows.get(1).roles());
+    }
+
+    @Test
+    public void nextShouldReturnRowWithErrorWhenJsonLineIsMalformed() throws IOException {
+        List<UserImportReader.Row> rows = readAll(UserFileFormat.NDJSON, """
+                {"name":"Ana Lima",
+                ["not","an","object"]
+                {"name":"Rui Costa","email":"rui@gmail.com","password":"12345678"}
+                """);
+
+        Assertions.assertEquals("Malformed JSON", rows.get(0).error());
+        Assertions.assertEquals("Expected a JSON object", rows.get(1).error());
+        Assertions.assertNull(rows.get(2).error());
+    }
+
+    @Test
+    public void nextShouldReadCsvColumnsInHeaderOrderWithQuotedFields() throws IOException {
+        List<UserImportReader.Row> rows = readAll(UserFileFormat.CSV, """
+                email,Name,password,roles
+                ana@gmail.com,"Lima, Ana",12345678,ROLE_STUDENT|ROLE_INSTRUCTOR
+                rui@gmail.com,"Rui ""Rocket"" Costa",12345678,
+                bad@gmail.com,"Unclosed,12345678,
+                """);
+
+        Assertions.assertEquals(new UserImportReader.Row(2, "Lima, Ana", "ana@gmail.com", "12345678",
+                List.of("ROLE_STUDENT", "ROLE_INSTRUCTOR"), null), rows.get(0));
+        Assertions.assertEquals("Rui \"Rocket\" Costa", rows.get(1).name());
+        Assertions.assertEquals(List.of(), rows.get(1).roles());
+        Assertions.assertEquals("Malformed CSV row", rows.get(2).error());
+        Assertions.assertEquals(4, rows.get(2).line());
+    }
+
+    @Test
+    public void nextShouldThrowInvalidRequestExceptionWhenCsvHeaderLacksRequiredColumn() {
+        Assertions.assertThrows(InvalidRequestException.class, () -> readAll(UserFileFormat.CSV, """
+                name,email
+                Ana Lima,ana@gmail.com
+                """));
+    }
+
+    private static List<UserImportReader.Row> readAll(UserFileFormat format, String body) throws IOException {
+        UserImportReader reader = new UserImportReader(new StringReader(body), format, new ObjectMapper());
+        List<UserImportReader.Row> rows = new ArrayList<>();
+        for (UserImportReader.Row row = reader.next(); row != null; row = reader.next()) {
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,156 @@
+package com.luis.learnplatform.services;
+
+import com.luis.learnplatform.entities.DTO.UserDTO;
+import com.luis.learnplatform.entities.DTO.UserPatchDTO;
+import com.luis.learnplatform.entities.Role;
+import com.luis.learnplatform.entities.User;
+import com.luis.learnplatform.repositories.RoleRepository;
+import com.luis.learnplatform.repositories.UserRepository;
+import com.luis.learnplatform.util.Trigrams;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+public class UserServiceQueryCountIT {
+
+    @Autowired
+    private UserService service;
+
+    @Autowired
+    private UserRepository repository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        Role student = roleRepository.getReferenceById(1L);
+        for (int i = 0; i < 30; i++) {
+            User user = new User(null, "Student " + i, "student" + i + "@gmail.com", "12345678");
+            user.getRoles().add(student);
+            repository.save(user);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void findAllShouldRunSameNumberOfQueriesWhateverThePageSize() {
+        long small = countQueries(() -> assertRolesLoaded(service.findAll(null, PageRequest.of(0, 5, Sort.by("name")))));
+        long large = countQueries(() -> assertRolesLoaded(service.findAll(null, PageRequest.of(0, 30, Sort.by("name")))));
+
+        // Page, count and roles
+        Assertions.assertEquals(3, small);
+        Assertions.assertEquals(small, large);
+    }
+
+    @Test
+    public void findAllShouldRunSameNumberOfQueriesWhenSearchingByName() {
+        long queries = countQueries(() -> assertRolesLoaded(service.findAll("student", PageRequest.of(0, 20, Sort.by("name")))));
+
+        Assertions.assertEquals(3, queries);
+    }
+
+    @Test
+    public void findAllAfterShouldRunTwoQueriesWhateverThePageSize() {
+        long small = countQueries(() -> service.findAllAfter(null, null, 5).getContent().forEach(this::assertRolesLoaded));
+        long large = countQueries(() -> service.findAllAfter(null, null, 30).getContent().forEach(this::assertRolesLoaded));
+
+        Assertions.assertEquals(2, small);
+        Assertions.assertEquals(small, large);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void patchShouldUpdateUserAndOnlyTheNameTrigramsWhenRenaming() {
+        Long id = authenticateAs("student0@gmail.com");
+
+        countQueries(() -> {
+            service.patch(id, new UserPatchDTO("Student Zero", null, null, null));
+            entityManager.flush();
+        });
+
+        // Not a single UPDATE: the trigrams of the old name are deleted and those of the new one inserted
+        Assertions.assertEquals(1, statistics.getEntityUpdateCount());
+        Assertions.assertEquals(1, statistics.getCollectionStatistics(User.class.getName() + ".nameTrigrams").getUpdateCount());
+        Assertions.assertEquals(0, statistics.getCollectionStatistics(User.class.getName() + ".roles").getUpdateCount());
+        Assertions.assertEquals(0, statistics.getCollectionRecreateCount());
+        Assertions.assertEquals(Trigrams.ofValue("Student Zero"), new HashSet<>(entityManager
+                .createQuery("SELECT t FROM User u JOIN u.nameTrigrams t WHERE u.id = :id", String.class)
+                .setParameter("id", id)
+                .getResultList()));
+    }
+
+    @Test
+    public void patchShouldUpdateOnlyTheUserRowWhenChangingEmail() {
+        Long id = authenticateAs("student1@gmail.com");
+
+        countQueries(() -> {
+            service.patch(id, new UserPatchDTO(null, "student1.new@gmail.com", null, null));
+            entityManager.flush();
+        });
+
+        Assertions.assertEquals(1, statistics.getEntityUpdateCount());
+        Assertions.assertEquals(0, statistics.getCollectionUpdateCount());
+        Assertions.assertEquals(0, statistics.getCollectionRecreateCount());
+    }
+
+    private Long authenticateAs(String email) {
+        Long id = repository.findByEmail(email).orElseThrow().getId();
+        Jwt jwt = Jwt.withTokenValue("token").header("alg", "RS256")
+                .claim("username", email)
+                .claim("user_id", id)
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new JwtAuthenticationToken(jwt, AuthorityUtils.createAuthorityList("ROLE_STUDENT")));
+        return id;
+    }
+
+    private long countQueries(Runnable action) {
+        entityManager.clear();
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void assertRolesLoaded(Page<UserDTO> page) {
+        Assertions.assertFalse(page.isEmpty());
+        page.forEach(this::assertRolesLoaded);
+    }
+
+    // Joana Santos from the seed data has no roles
+    private void assertRolesLoaded(UserDTO user) {
+        if (user.getName().startsWith("Student")) {
+            Assertions.assertFalse(user.getRoles().isEmpty());
+        }
+    }
+}
@@ -4,9 +4,12 @@ package com.luis.learnplatform.services;
 import com.luis.learnplatform.entities.DTO.RoleDTO;
 import com.luis.learnplatform.entities.DTO.UserDTO;
 import com.luis.learnplatform.entities.DTO.UserInsertDTO;
+import com.luis.learnplatform.entities.DTO.UserLookupDTO;
+import com.luis.learnplatform.entities.DTO.UserPatchDTO;
 import com.luis.learnplatform.entities.Role;
 import com.luis.learnplatform.entities.User;
 import com.luis.learnplatform.entities.projections.UserDetailsProjection;
+import com.luis.learnplatform.entities.projections.UserVersion;
 import com.luis.learnplatform.factories.UserFactory;
 import com.luis.learnplatform.repositories.RoleRepository;
 import com.luis.learnplatform.repositories.UserRepository;
@@ -14,6 +17,7 @@ import com.luis.learnplatform.repositories.UserRepository;
 import com.luis.learnplatform.services.exceptions.DatabaseException;
 import com.luis.learnplatform.services.exceptions.ForbiddenException;
 import com.luis.learnplatform.services.exceptions.ResourceNotFoundException;
+import com.luis.learnplatform.util.CurrentUser;
 import com.luis.learnplatform.util.CustomUserUtil;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.Assertions;
@@ -35,8 +39,10 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.text.ParseException;
 import java.util.*;
+import java.util.function.Function;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 
 @ExtendWith(SpringExtension.class)
@@ -57,6 +63,15 @@ public class UserServiceTests {
     @Mock
     private CustomUserUtil customUserUtil;
 
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private RegisteredEmailFilter registeredEmailFilter;
+
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
     private Long existingUserId, nonExistingUserId, existingRoleId, nonExistingRoleId, existingUserAdminId, dependentUserId;
     private String existingName, nonExistingName, existingUserEmail, nonExistingUserEmail;
     private PageImpl<User> users;
@@ -93,8 +108,8 @@ public class UserServiceTests {
 
 
         Mockito.when(repository.findAll(any(Pageable.class))).thenReturn(users);
-        Mockito.when(repository.findByNameContainingIgnoreCase(eq(existingName),any(Pageable.class))).thenReturn(users);
-        Mockito.when(repository.findByNameContainingIgnoreCase(eq(nonExistingName),any(Pageable.class))).thenReturn(Page.empty());
+        Mockito.when(repository.searchByName(eq(existingName),any(),anyLong(),any(Pageable.class))).thenReturn(users);
+        Mockito.when(repository.searchByName(eq(nonExistingName),any(),anyLong(),any(Pageable.class))).thenReturn(Page.empty());
         Mockito.when(repository.findById(existingUserId)).thenReturn(Optional.of(user));
         Mockito.when(repository.findById(nonExistingUserId)).thenReturn(Optional.empty());
         Mockito.when(repository.save(any(User.class))).thenReturn(user);
@@ -118,6 +133,9 @@ public class UserServiceTests {
 
         Mockito.when(repository.searchUserAndRolesByEmail(existingUserEmail)).thenReturn(userDetailsProjections);
         Mockito.when(repository.searchUserAndRolesByEmail(nonExistingUserEmail)).thenThrow(UsernameNotFoundException.class);
+        Mockito.when(registeredEmailFilter.mightBeRegistered(any(String.class))).thenReturn(true);
+        Mockito.when(userDetailsCache.get(any(String.class), any())).thenAnswer(invocation ->
+                invocation.<Function<String, List<UserDetailsProjection>>>getArgument(1).apply(invocation.getArgument(0)));
 
         Mockito.when(repository.findByEmail(existingUserEmail)).thenReturn(Optional.of(user));
         Mockito.when(repository.findByEmail(nonExistingUserEmail)).thenReturn(Optional.empty());
@@ -150,6 +168,25 @@ public class UserServiceTests {
         Assertions.assertTrue(dtos.isEmpty());
     }
 
+    @Test
+    public void findAllShouldSearchTrigramIndexWithEveryTrigramOfName() {
+        Pageable pageable = PageRequest.of(0, 2);
+        service.findAll("Luis", pageable);
+
+        Mockito.verify(repository).searchByName("Luis", Set.of("lui", "uis"), 2L, pageable);
+    }
+
+    @Test
+    public void findAllShouldFallBackToScanWhenNameIsShorterThanTrigram() {
+        Pageable pageable = PageRequest.of(0, 2);
+        Mockito.when(repository.findByNameContainingIgnoreCase(eq("Lu"), any(Pageable.class))).thenReturn(users);
+
+        Page<UserDTO> dtos = service.findAll("Lu", pageable);
+
+        Assertions.assertEquals(1, dtos.getContent().size());
+        Mockito.verify(repository, Mockito.never()).searchByName(any(), any(), anyLong(), any(Pageable.class));
+    }
+
     @Test
     public void findByIdShouldReturnUserDTOWhenIdExists(){
         userDTO  = service.findById(existingUserId);
@@ -162,6 +199,55 @@ public class UserServiceTests {
         Assertions.assertThrows(ResourceNotFoundException.class, ()-> service.findById(nonExistingUserId));
     }
 
+    @Test
+    public void findAllByIdShouldReturnUsersInRequestOrderAndMarkMissingIds() {
+        Mockito.when(customUserUtil.getCurrentUser()).thenReturn(new CurrentUser(userAdmin.getId(), userAdmin.getEmail(), List.of("ROLE_ADMIN")));
+        Mockito.when(repository.findWithRolesByIdIn(Set.of(existingUserId, existingUserAdminId, nonExistingUserId)))
+                .thenReturn(List.of(userAdmin, user));
+
+        List<UserLookupDTO> result = service.findAllById(List.of(nonExistingUserId, existingUserId, existingUserAdminId));
+
+        Assertions.assertEquals(List.of(nonExistingUserId, existingUserId, existingUserAdminId),
+                result.stream().map(UserLookupDTO::getId).toList());
+        Assertions.assertFalse(result.get(0).getFound());
+        Assertions.assertNull(result.get(0).getUser());
+        Assertions.assertEquals(user.getEmail(), result.get(1).getUser().getEmail());
+        Assertions.assertEquals(userAdmin.getEmail(), result.get(2).getUser().getEmail());
+        Mockito.verify(repository, Mockito.never()).findById(any());
+    }
+
+    @Test
+    public void findAllByIdShouldThrowForbiddenExceptionWhenOtherUserIdRequestedByNonAdmin() {
+        Mockito.when(customUserUtil.getCurrentUser()).thenReturn(new CurrentUser(user.getId(), user.getEmail(), List.of("ROLE_STUDENT")));
+
+        Assertions.assertThrows(ForbiddenException.class, () -> service.findAllById(List.of(user.getId(), userAdmin.getId())));
+        Mockito.verify(repository, Mockito.never()).findWithRolesByIdIn(any());
+    }
+
+    @Test
+    public void findVersionShouldReturnVersionWithoutLoadingUserWhenIdExists() {
+        Mockito.when(repository.findVersionById(existingUserId)).thenReturn(Optional.of(new UserVersion(existingUserId, 3L)));
+
+        UserVersion version = service.findVersion(existingUserId);
+
+        Assertions.assertEquals(3L, version.version());
+        Mockito.verify(repository, Mockito.never()).findById(any());
+    }
+
+    @Test
+    public void findVersionShouldThrowResourceNotFoundExceptionWhenIdDoesNotExist() {
+        Assertions.assertThrows(ResourceNotFoundException.class, () -> service.findVersion(nonExistingUserId));
+    }
+
+    @Test
+    public void getMyVersionShouldUseTokenIdWhenUserIdClaimPresent() {
+        Mockito.when(customUserUtil.getCurrentUser()).thenReturn(new CurrentUser(user.getId(), user.getEmail(), List.of("ROLE_STUDENT")));
+        Mockito.when(repository.findVersionById(user.getId())).thenReturn(Optional.of(new UserVersion(user.getId(), 1L)));
+
+        Assertions.assertEquals(new UserVersion(user.getId(), 1L), service.getMyVersion());
+        Mockito.verify(repository, Mockito.never()).findVersionByEmail(any());
+    }
+
     @Test
     public void insertShouldPersistNewUserAndReturnUserDTO(){
         userInsertDTO.setId(null);
@@ -403,4 +489,173 @@ public class UserServiceTests {
         });
     }
 
+    @Test
+    public void getMeShouldLoadUserByTokenIdWhenUserIdClaimPresent() {
+        Mockito.when(customUserUtil.getCurrentUser()).thenReturn(new CurrentUser(user.getId(), user.getEmail(), List.of("ROLE_STUDENT")));
+
+        userDTO = service.getMe();
+
+        Assertions.assertEquals(user.getId(), userDTO.getId());
+        Mockito.verify(repository, Mockito.never()).findByEmail(any(String.class));
+    }
+
+    @Test
+    public void validateSelfOrAdminShouldNotQueryUserWhenUserIdClaimPresent() {
+        Mockito.when(customUserUtil.getCurrentUser()).thenReturn(new CurrentUser(user.getId(), user.getEmail(), List.of("ROLE_STUDENT")));
+
+        Assertions.assertDoesNotThrow(() -> service.validateSelfOrAdmin(user.getId()));
+        Assertions.assertThrows(ForbiddenException.class, () -> service.validateSelfOrAdmin(userAdmin.getId()));
+        Mockito.verify(repository, Mockito.never()).findByEmail(any(String.class));
+    }
+
+    @Test
+    public void validateSelfOrAdminShouldPassForAnyUserWhenAdminClaimPresent() {
+        Mockito.when(customUserUtil.getCurrentUser()).thenReturn(new CurrentUser(userAdmin.getId(), userAdmin.getEmail(), List.of("ROLE_ADMIN")));
+
+        Assertions.assertDoesNotThrow(() -> service.validateSelfOrAdmin(user.getId()));
+        Mockito.verify(repository, Mockito.never()).findByEmail(any(String.class));
+    }
+
+    @Test
+    public void updateShouldEvictCachedUserDetailsOfOldAndNewEmail() {
+        String oldEmail = user.getEmail();
+        userInsertDTO.setEmail("joel@email.com");
+        Mockito.when(customUserUtil.getCurrentUser()).thenReturn(new CurrentUser(user.getId(), oldEmail, List.of("ROLE_STUDENT")));
+
+        service.update(user.getId(), userInsertDTO);
+
+        Mockito.verify(userDetailsCache).evict(oldEmail);
+        Mockito.verify(userDetailsCache).evict("joel@email.com");
+    }
+
+    @Test
+    public void deleteShouldEvictCachedUserDetails() {
+        String email = user.getEmail();
+
+        service.delete(existingUserId);
+
+        Mockito.verify(userDetailsCache).evict(email);
+    }
+
+    @Test
+    public void loadUserByUsernameShouldNotQueryWhenEmailWasNeverRegistered() {
+        Mockito.when(registeredEmailFilter.mightBeRegistered("stranger@gmail.com")).thenReturn(false);
+
+        Assertions.assertThrows(UsernameNotFoundException.class, () -> service.loadUserByUsername("stranger@gmail.com"));
+        Mockito.verify(repository, Mockito.never()).searchUserAndRolesByEmail("stranger@gmail.com");
+    }
+
+    @Test
+    public void insertShouldAddEmailToRegisteredEmailFilter() {
+        userInsertDTO.setId(null);
+        service.insert(userInsertDTO);
+
+        Mockito.verify(registeredEmailFilter).add(userInsertDTO.getEmail());
+    }
+
+    @Test
+    public void updatePasswordShouldReplaceHashAndEvictCachedUserDetails() {
+        user.setPassword("oldHash");
+        Mockito.when(repository.updatePassword(user.getEmail(), "oldHash", "newHash")).thenReturn(1);
+
+        UserDetails result = service.updatePassword(user, "newHash");
+
+        Assertions.assertEquals("newHash", result.getPassword());
+        Mockito.verify(userDetailsCache).evict(user.getEmail());
+    }
+
+    @Test
+    public void updatePasswordShouldKeepPasswordChangedMeanwhile() {
+        user.setPassword("oldHash");
+        Mockito.when(repository.updatePassword(user.getEmail(), "oldHash", "newHash")).thenReturn(0);
+
+        UserDetails result = service.updatePassword(user, "newHash");
+
+        Assertions.assertEquals("oldHash", result.getPassword());
+        Mockito.verify(userDetailsCache, Mockito.never()).evict(user.getEmail());
+    }
+
+    @Test
+    public void deleteShouldRevokeTokensOfDeletedUser() {
+        service.delete(existingUserId);
+
+        Mockito.verify(tokenRevocationService).revokeUser(existingUserId);
+    }
+
+    @Test
+    public void updateShouldRevokeTokensWhenPasswordChanges() throws ParseException {
+        Mockito.when(customUserUtil.getLoggedUser()).thenReturn(user.getEmail());
+        Mockito.when(passwordEncoder.matches(any(), any())).thenReturn(false);
+
+        service.update(user.getId(), userInsertDTO);
+
+        Mockito.verify(tokenRevocationService).revokeUser(user.getId());
+    }
+
+    @Test
+    public void updateShouldKeepTokensWhenPasswordIsUnchanged() throws ParseException {
+        Mockito.when(customUserUtil.getLoggedUser()).thenReturn(user.getEmail());
+        Mockito.when(passwordEncoder.matches(any(), any())).thenReturn(true);
+
+        service.update(user.getId(), userInsertDTO);
+
+        Mockito.verify(tokenRevocationService, Mockito.never()).revokeUser(any());
+    }
+
+    @Test
+    public void patchShouldOnlyRenameWhenOnlyNameIsSupplied() throws ParseException {
+        Mockito.when(customUserUtil.getLoggedUser()).thenReturn(user.getEmail());
+        Set<Role> roles = new HashSet<>(user.getRoles());
+
+        UserDTO result = service.patch(user.getId(), new UserPatchDTO("Joel", null, null, null));
+
+        Assertions.assertEquals("Joel", result.getName());
+        Assertions.assertEquals("teste", user.getPassword());
+        Assertions.assertEquals(roles, user.getRoles());
+        Mockito.verify(passwordEncoder, Mockito.never()).encode(any());
+        Mockito.verify(tokenRevocationService, Mockito.never()).revokeUser(any());
+        Mockito.verify(userDetailsCache, Mockito.never()).evict(any());
+    }
+
+    @Test
+    public void patchShouldHashPasswordAndRevokeTokensWhenPasswordIsSupplied() throws ParseException {
+        Mockito.when(customUserUtil.getLoggedUser()).thenReturn(user.getEmail());
+
+        service.patch(user.getId(), new UserPatchDTO(null, null, "novapassword", null));
+
+        Assertions.assertEquals("hashedPassword", user.getPassword());
+        Mockito.verify(passwordEncoder).encode("novapassword");
+        Mockito.verify(tokenRevocationService).revokeUser(user.getId());
+        Mockito.verify(userDetailsCache).evict(user.getEmail());
+    }
+
+    @Test
+    public void patchShouldThrowForbiddenExceptionWhenNonAdminChangesRoles() throws ParseException {
+        Mockito.when(customUserUtil.getLoggedUser()).thenReturn(user.getEmail());
+        Set<Role> roles = new HashSet<>(user.getRoles());
+
+        Assertions.assertThrows(ForbiddenException.class, () -> service.patch(user.getId(),
+                new UserPatchDTO(null, null, null, Set.of(new RoleDTO(3L, "ROLE_ADMIN")))));
+
+        Assertions.assertEquals(roles, user.getRoles());
+        Mockito.verify(roleRepository, Mockito.never()).getReferenceById(any());
+    }
+
+    @Test
+    public void patchShouldOnlyAddAndRemoveRolesThatDifferWhenAdmin() throws ParseException {
+        Mockito.when(customUserUtil.getLoggedUser()).thenReturn(userAdmin.getEmail());
+        Mockito.when(repository.findByEmail(userAdmin.getEmail())).thenReturn(Optional.of(userAdmin));
+        Role kept = new Role(2L, "ROLE_INSTRUCTOR");
+        Role added = new Role(3L, "ROLE_ADMIN");
+        user.getRoles().add(kept);
+        Mockito.when(roleRepository.getReferenceById(3L)).thenReturn(added);
+
+        service.patch(user.getId(), new UserPatchDTO(null, null, null,
+                Set.of(new RoleDTO(2L, "ROLE_INSTRUCTOR"), new RoleDTO(3L, "ROLE_ADMIN"))));
+
+        Assertions.assertEquals(Set.of(kept, added), user.getRoles());
+        Assertions.assertTrue(user.getRoles().stream().anyMatch(role -> role == kept));
+        Mockito.verify(roleRepository, Mockito.never()).getReferenceById(2L);
+    }
+
 }
@@ -0,0 +1,61 @@
+package com.luis.learnplatform.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class BloomFilterTests {
+
+    private static final int EMAILS = 100_000;
+
+    @Test
+    public void mightContainShouldReturnTrueForEveryAddedValue() {
+        BloomFilter filter = new BloomFilter(EMAILS, 0.01);
+        for (int i = 0; i < EMAILS; i++) {
+            filter.put("user" + i + "@gmail.com");
+        }
+
+        for (int i = 0; i < EMAILS; i++) {
+            Assertions.assertTrue(filter.mightContain("user" + i + "@gmail.com"));
+        }
+    }
+
+    @Test
+    public void mightContainShouldStayNearConfiguredFalsePositiveProbability() {
+        BloomFilter filter = new BloomFilter(EMAILS, 0.01);
+        for (int i = 0; i < EMAILS; i++) {
+            filter.put("user" + i + "@gmail.com");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < EMAILS; i++) {
+            if (filter.mightContain("stranger" + i + "@gmail.com")) {
+                falsePositives++;
+            }
+        }
+        Assertions.assertTrue(falsePositives < EMAILS * 0.02);
+    }
+
+    @Test
+    public void putShouldNotLoseValuesWhenCalledConcurrently() throws Exception {
+        BloomFilter filter = new BloomFilter(EMAILS, 0.01);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            int offset = t;
+            executor.submit(() -> {
+                for (int i = offset; i < EMAILS; i += 8) {
+                    filter.put("user" + i + "@gmail.com");
+                }
+            });
+        }
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        for (int i = 0; i < EMAILS; i++) {
+            Assertions.assertTrue(filter.mightContain("user" + i + "@gmail.com"));
+        }
+    }
+}
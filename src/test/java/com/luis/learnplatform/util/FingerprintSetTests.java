@@ -0,0 +1,76 @@
+package com.luis.learnplatform.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FingerprintSetTests {
+
+    private static final int VALUES = 200_000;
+
+    @Test
+    public void containsShouldReturnTrueOnlyForAddedValuesAcrossResizes() {
+        FingerprintSet set = new FingerprintSet(1);
+        for (int i = 0; i < VALUES; i++) {
+            Assertions.assertTrue(set.add("token-" + i));
+        }
+
+        for (int i = 0; i < VALUES; i++) {
+            Assertions.assertTrue(set.contains("token-" + i));
+            Assertions.assertFalse(set.contains("other-" + i));
+        }
+        Assertions.assertEquals(VALUES, set.size());
+    }
+
+    @Test
+    public void addShouldIgnoreDuplicates() {
+        FingerprintSet set = new FingerprintSet(16);
+
+        Assertions.assertTrue(set.add("c0ffee"));
+        Assertions.assertFalse(set.add("c0ffee"));
+        Assertions.assertEquals(1, set.size());
+    }
+
+    @Test
+    public void containsShouldSeeEveryCompletedAddWhileAnotherThreadResizes() throws Exception {
+        FingerprintSet set = new FingerprintSet(16);
+        String[] values = new String[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = UUID.randomUUID().toString();
+        }
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger misses = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        executor.submit(() -> {
+            for (String value : values) {
+                set.add(value);
+                added.incrementAndGet();
+            }
+            done.countDown();
+        });
+        for (int t = 0; t < 3; t++) {
+            executor.submit(() -> {
+                while (done.getCount() > 0) {
+                    int visible = added.get();
+                    for (int i = Math.max(0, visible - 100); i < visible; i++) {
+                        if (!set.contains(values[i])) {
+                            misses.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(0, misses.get());
+        Assertions.assertEquals(VALUES, set.size());
+    }
+}
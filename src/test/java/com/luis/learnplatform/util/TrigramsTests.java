@@ -0,0 +1,39 @@
+package com.luis.learnplatform.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+public class TrigramsTests {
+
+    @Test
+    public void ofValueShouldContainEveryTrigramOfAnySubstringIgnoringCase() {
+        Set<String> trigrams = Trigrams.ofValue("Maria Green");
+
+        for (String query : new String[]{"mar", "ria gr", "GREEN", "a G"}) {
+            Assertions.assertTrue(trigrams.containsAll(Trigrams.ofQuery(query)), query);
+        }
+        Assertions.assertFalse(trigrams.containsAll(Trigrams.ofQuery("grey")));
+    }
+
+    @Test
+    public void ofValueShouldPadShortValues() {
+        Assertions.assertEquals(Set.of("  a", " al", "al "), Trigrams.ofValue("Al"));
+        Assertions.assertTrue(Trigrams.ofValue("").isEmpty());
+        Assertions.assertTrue(Trigrams.ofValue(null).isEmpty());
+    }
+
+    @Test
+    public void ofQueryShouldBeEmptyWhenQueryIsShorterThanTrigram() {
+        Assertions.assertTrue(Trigrams.ofQuery("Al").isEmpty());
+        Assertions.assertEquals(Set.of("ali"), Trigrams.ofQuery("Ali"));
+    }
+
+    @Test
+    public void ofQueryShouldNotSplitSurrogatePairs() {
+        Set<String> trigrams = Trigrams.ofQuery("a😀bc");
+
+        Assertions.assertEquals(Set.of("a😀b", "😀bc"), trigrams);
+    }
+}
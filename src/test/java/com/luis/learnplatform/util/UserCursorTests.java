@@ -0,0 +1,25 @@
+package com.luis.learnplatform.util;
+
+import com.luis.learnplatform.services.exceptions.InvalidRequestException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class UserCursorTests {
+
+    @Test
+    public void decodeShouldReturnEncodedCursor() {
+        UserCursor cursor = new UserCursor("Ana: São Paulo", 42L);
+
+        String token = cursor.encode();
+
+        Assertions.assertTrue(token.matches("[A-Za-z0-9_-]+"));
+        Assertions.assertEquals(cursor, UserCursor.decode(token));
+    }
+
+    @Test
+    public void decodeShouldThrowInvalidRequestExceptionWhenTokenIsMalformed() {
+        Assertions.assertThrows(InvalidRequestException.class, () -> UserCursor.decode("not a cursor"));
+        Assertions.assertThrows(InvalidRequestException.class, () -> UserCursor.decode("bm8tc2VwYXJhdG9y"));
+        Assertions.assertThrows(InvalidRequestException.class, () -> UserCursor.decode("YWJjOkFuYQ"));
+    }
+}